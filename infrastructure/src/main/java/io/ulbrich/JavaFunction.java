@@ -0,0 +1,167 @@
+package io.ulbrich;
+
+import software.amazon.awscdk.BundlingOptions;
+import software.amazon.awscdk.DockerVolume;
+import software.amazon.awscdk.services.applicationautoscaling.ScalingSchedule;
+import software.amazon.awscdk.services.lambda.Alias;
+import software.amazon.awscdk.services.lambda.AutoScalingOptions;
+import software.amazon.awscdk.services.lambda.CfnFunction;
+import software.amazon.awscdk.services.lambda.IScalableFunctionAttribute;
+import software.amazon.awscdk.services.lambda.Code;
+import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.UtilizationScalingOptions;
+import software.amazon.awscdk.services.logs.RetentionDays;
+import software.amazon.awscdk.services.s3.assets.AssetOptions;
+import software.constructs.Construct;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonList;
+import static software.amazon.awscdk.BundlingOutput.ARCHIVED;
+
+/**
+ * Builds a Lambda function from a Maven module below {@code software/} and returns its {@code live} alias, which points
+ * to the version published for the current code and configuration and carries the provisioned concurrency.
+ * <p>
+ * The module is built inside the bundling image of the profile's runtime.
+ */
+final class JavaFunction {
+
+    private JavaFunction() {
+    }
+
+    static Builder builder(Construct scope, String id) {
+        return new Builder(scope, id);
+    }
+
+    static class Builder {
+        private final Construct scope;
+        private final String id;
+        private String directory;
+        private List<String> localDependencies = List.of();
+        private String jarName;
+        private String handler;
+        private Map<String, String> environment = Map.of();
+        private PerformanceProfile profile = PerformanceProfile.builder().build();
+
+        private Builder(Construct scope, String id) {
+            this.scope = scope;
+            this.id = id;
+        }
+
+        /**
+         * @param directory module below software/ that contains the function
+         */
+        Builder directory(String directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param localDependencies modules below software/ the function depends on, they are installed before the function is built
+         */
+        Builder localDependencies(List<String> localDependencies) {
+            this.localDependencies = localDependencies;
+            return this;
+        }
+
+        /**
+         * @param jarName file name of the shaded jar in target/, ".jar" is appended if missing
+         */
+        Builder jarName(String jarName) {
+            this.jarName = jarName.endsWith(".jar") ? jarName : jarName + ".jar";
+            return this;
+        }
+
+        Builder handler(String handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        Builder environment(Map<String, String> environment) {
+            this.environment = environment;
+            return this;
+        }
+
+        Builder profile(PerformanceProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        Alias build() {
+            StringBuilder build = new StringBuilder();
+            for (String dependency : localDependencies) {
+                build.append(String.format("cd /asset-input/%s && mvn clean install && ", dependency));
+            }
+            build.append(String.format("cd /asset-input/%1$s && mvn clean install && cp /asset-input/%1$s/target/%2$s /asset-output/", directory, jarName));
+            List<String> commands = List.of(
+                    "/bin/sh",
+                    "-c",
+                    build.toString()
+            );
+
+            BundlingOptions bundlingOptions = BundlingOptions.builder()
+                    .command(commands)
+                    .image(profile.getRuntime().getBundlingImage())
+                    .volumes(singletonList(
+                            // Mount local .m2 repo to avoid download all the dependencies again inside the container
+                            DockerVolume.builder()
+                                    .hostPath(System.getProperty("user.home") + "/.m2/")
+                                    .containerPath("/root/.m2/")
+                                    .build()
+                    ))
+                    .user("root")
+                    .outputType(ARCHIVED)
+                    .build();
+
+            Map<String, String> functionEnvironment = new HashMap<>(environment);
+            if (profile.getJavaToolOptions() != null) {
+                functionEnvironment.put("JAVA_TOOL_OPTIONS", profile.getJavaToolOptions());
+            }
+
+            Function function = Function.Builder.create(scope, id)
+                    .runtime(profile.getRuntime())
+                    .architecture(profile.getArchitecture())
+                    .code(Code.fromAsset("../software/", AssetOptions.builder()
+                            .bundling(bundlingOptions)
+                            .build()))
+                    .handler(handler)
+                    .environment(functionEnvironment)
+                    .memorySize(profile.getMemorySize())
+                    .reservedConcurrentExecutions(profile.getReservedConcurrency())
+                    .timeout(profile.getTimeout())
+                    .logRetention(RetentionDays.ONE_WEEK)
+                    .build();
+
+            if (profile.isSnapStart()) {
+                ((CfnFunction) function.getNode().getDefaultChild()).addPropertyOverride("SnapStart", Map.of("ApplyOn", "PublishedVersions"));
+            }
+
+            // The current version is published again whenever the function changes, overrides included
+            Alias alias = Alias.Builder.create(scope, id + "Alias")
+                    .aliasName("live")
+                    .version(function.getCurrentVersion())
+                    .provisionedConcurrentExecutions(profile.getProvisionedConcurrency() > 0 ? profile.getProvisionedConcurrency() : null)
+                    .build();
+            if (profile.getMaxProvisionedConcurrency() != null) {
+                IScalableFunctionAttribute scaling = alias.addAutoScaling(AutoScalingOptions.builder()
+                        .minCapacity(profile.getProvisionedConcurrency())
+                        .maxCapacity(profile.getMaxProvisionedConcurrency())
+                        .build());
+                scaling.scaleOnUtilization(UtilizationScalingOptions.builder()
+                        .utilizationTarget(profile.getProvisionedUtilizationTarget())
+                        .build());
+                for (PerformanceProfile.ConcurrencySchedule schedule : profile.getConcurrencySchedules()) {
+                    scaling.scaleOnSchedule(schedule.getName(), ScalingSchedule.builder()
+                            .schedule(schedule.getSchedule())
+                            .minCapacity(schedule.getMinCapacity())
+                            .maxCapacity(schedule.getMaxCapacity())
+                            .build());
+                }
+            }
+            return alias;
+        }
+    }
+}
@@ -1,31 +1,56 @@
 package io.ulbrich;
 
-import software.amazon.awscdk.BundlingOptions;
-import software.amazon.awscdk.DockerVolume;
 import software.amazon.awscdk.Duration;
+import software.amazon.awscdk.Fn;
+import software.amazon.awscdk.RemovalPolicy;
 import software.amazon.awscdk.services.apigateway.*;
-import software.amazon.awscdk.services.lambda.*;
-import software.amazon.awscdk.services.lambda.Runtime;
-import software.amazon.awscdk.services.logs.RetentionDays;
+import software.amazon.awscdk.services.dynamodb.Attribute;
+import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.lambda.Alias;
 import software.amazon.awscdk.services.s3.Bucket;
-import software.amazon.awscdk.services.s3.assets.AssetOptions;
 import software.amazon.awscdk.services.ssm.StringParameter;
+import software.amazon.awscdk.services.stepfunctions.CatchProps;
+import software.amazon.awscdk.services.stepfunctions.JsonPath;
 import software.amazon.awscdk.services.stepfunctions.Parallel;
 import software.amazon.awscdk.services.stepfunctions.StateMachine;
 import software.amazon.awscdk.services.stepfunctions.StateMachineType;
 import software.amazon.awscdk.services.stepfunctions.Succeed;
+import software.amazon.awscdk.services.stepfunctions.tasks.DynamoAttributeValue;
+import software.amazon.awscdk.services.stepfunctions.tasks.DynamoPutItem;
 import software.amazon.awscdk.services.stepfunctions.tasks.LambdaInvoke;
 import software.constructs.Construct;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-
-import static java.util.Collections.singletonList;
-import static software.amazon.awscdk.BundlingOutput.ARCHIVED;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class MyTestApi extends Construct {
+    // The only methods whose responses depend on nothing but the id and the caller
+    private static final String LAMBDA_ID_GET = "/lambda/{id}/GET";
+    private static final String SFN_ID_GET = "/sfn/{id}/GET";
+    private static final String ID_PARAMETER = "method.request.path.id";
+    // Where a deduplicating Fetch All puts the results it fanned back out, see fetchAll
+    private static final String FANNED_OUT = "branches";
+    // Bounds an async branch including the retries of its invocation, so a hanging branch ends up in "Store Failure"
+    // instead of leaving the execution RUNNING until the 5 minutes of an EXPRESS execution are over
+    private static final Duration ASYNC_BRANCH_TIMEOUT = Duration.minutes(1);
+
+    private final MyTestApiProps.BranchOutput branchOutput;
+
     public MyTestApi(Construct scope, String id) {
+        this(scope, id, MyTestApiProps.builder().build());
+    }
+
+    public MyTestApi(Construct scope, String id, MyTestApiProps props) {
         super(scope, id);
+        this.branchOutput = props.getBranchOutput();
 
         Bucket someBucket = new Bucket(this, "SomeBucket");
         StringParameter someBucketParam = StringParameter.Builder.create(this, "SomeBucketParameter")
@@ -34,125 +59,329 @@ public class MyTestApi extends Construct {
                 .stringValue(someBucket.getBucketArn())
                 .build();
 
-        Version fooList = createJavaFunctionVersion("FooListFunction", "FooList", "foo-list.jar", "io.ulbrich.App", Map.of(
-                "BUCKET", someBucket.getBucketName(),
-                "BUCKET_PARAM", someBucketParam.getParameterName()), false);
-        Version barList = createJavaFunctionVersion("BarListFunction", "BarList", "bar-list.jar", "io.ulbrich.App", Map.of(
-                "BUCKET", someBucket.getBucketName(),
-                "BUCKET_PARAM", someBucketParam.getParameterName()), true);
+        Alias fooList = JavaFunction.builder(this, "FooListFunction")
+                .directory("FooList")
+                .localDependencies(List.of("LambdaCommons", "ListProvider"))
+                .jarName("foo-list.jar")
+                .handler("io.ulbrich.FooListHandler")
+                .environment(Map.of(
+                        "BUCKET", someBucket.getBucketName(),
+                        "BUCKET_PARAM", someBucketParam.getParameterName(),
+                        "BODY_COMPRESSION_MIN_LENGTH", String.valueOf(props.getBranchCompressionMinLength())))
+                .profile(props.getFooListProfile())
+                .build();
+        Alias barList = JavaFunction.builder(this, "BarListFunction")
+                .directory("BarList")
+                .localDependencies(List.of("LambdaCommons", "ListProvider"))
+                .jarName("bar-list.jar")
+                .handler("io.ulbrich.BarListHandler")
+                .environment(Map.of(
+                        "BUCKET", someBucket.getBucketName(),
+                        "BUCKET_PARAM", someBucketParam.getParameterName(),
+                        "BODY_COMPRESSION_MIN_LENGTH", String.valueOf(props.getBranchCompressionMinLength())))
+                .profile(props.getBarListProfile())
+                .build();
+
+        // The output positions of Fetch All, as expected by the coordinator
+        Map<String, Alias> branches = new LinkedHashMap<>();
+        branches.put("FetchFoo", fooList);
+        branches.put("FetchBar", barList);
+        branches.put("FetchFoo2", fooList);
 
         StateMachine stateMachine = StateMachine.Builder.create(this, "MyStateMachine")
                 .stateMachineType(StateMachineType.EXPRESS)
-                .definition(Parallel.Builder.create(this, "Fetch All")
-                        .build()
-                        .branch(LambdaInvoke.Builder.create(this, "FetchFoo")
-                                .lambdaFunction(fooList)
-                                .build())
-                        .branch(LambdaInvoke.Builder.create(this, "FetchBar")
-                                .lambdaFunction(barList)
-                                .build())
-                        .branch(LambdaInvoke.Builder.create(this, "FetchFoo2")
-                                .lambdaFunction(fooList)
-                                .build())
+                .definition(fetchAll("", branches)
                         .next(Succeed.Builder.create(this, "Finished").build()))
                 .build();
 
+        // Resolves many ids in one execution, every item gets the input of a single id request
+        StateMachine batchStateMachine = StateMachine.Builder.create(this, "MyBatchStateMachine")
+                .stateMachineType(StateMachineType.EXPRESS)
+                .definition(software.amazon.awscdk.services.stepfunctions.Map.Builder.create(this, "Fetch Each")
+                        .itemsPath("$.ids")
+                        .maxConcurrency(props.getBatchConcurrency())
+                        .parameters(Map.of(
+                                "id.$", "$$.Map.Item.Value",
+                                "accountId.$", "$.accountId",
+                                "userArn.$", "$.userArn"))
+                        .build()
+                        .iterator(fetchAll("Batch ", branches))
+                        .next(Succeed.Builder.create(this, "Batch Finished").build()))
+                .build();
+
+        Map<String, String> coordinatorEnvironment = new HashMap<>(Map.of(
+                "SM_LIST_ARN", stateMachine.getStateMachineArn(),
+                "SM_BATCH_ARN", batchStateMachine.getStateMachineArn(),
+                "BATCH_CONCURRENCY", String.valueOf(props.getBatchConcurrency()),
+                "COORDINATOR_MODE", props.getCoordinatorMode().name(),
+                "RESPONSE_OUTPUT_ENCODING", props.isRawResponseOutput() ? "RAW" : "STRING",
+                "BRANCH_OUTPUT", props.getBranchOutput().name(),
+                "RESPONSE_CACHE_TTL_SECONDS", String.valueOf(props.getResponseCacheTtl().toSeconds().longValue()),
+                // Same branches as "Fetch All", used when the coordinator fans out in process
+                "LIST_FUNCTIONS", Fn.join(",", branches.values().stream().map(Alias::getFunctionArn).collect(Collectors.toList()))));
+
+        Table resultTable = null;
+        StateMachine asyncStateMachine = null;
+        if (props.isAsyncExecution()) {
+            resultTable = Table.Builder.create(this, "AsyncResults")
+                    .partitionKey(Attribute.builder().name("token").type(AttributeType.STRING).build())
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .timeToLiveAttribute("expiresAt")
+                    // Results are only kept for minutes anyway
+                    .removalPolicy(RemovalPolicy.DESTROY)
+                    .build();
+            asyncStateMachine = StateMachine.Builder.create(this, "MyAsyncStateMachine")
+                    .stateMachineType(props.getAsyncStateMachineType())
+                    .definition(fetchAll("Async ", "$.output", ASYNC_BRANCH_TIMEOUT, branches)
+                            .addCatch(storeResult("Store Failure", resultTable, "FAILED", "$.error"),
+                                    CatchProps.builder().resultPath("$.error").build())
+                            .next(storeResult("Store Result", resultTable, "SUCCEEDED", fetchAllResults("$.output", branches))))
+                    .build();
+            coordinatorEnvironment.put("ASYNC_SM_ARN", asyncStateMachine.getStateMachineArn());
+            coordinatorEnvironment.put("RESULT_TABLE", resultTable.getTableName());
+        }
 
-        Version listCoordinator = createJavaFunctionVersion("ListCoordinatorFunction", "ListCoordinator", "list-coordinator.jar", "io.ulbrich.App", Map.of(
-                "SM_LIST_ARN", stateMachine.getStateMachineArn()), true);
+        Alias listCoordinator = JavaFunction.builder(this, "ListCoordinatorFunction")
+                .directory("ListCoordinator")
+                .localDependencies(List.of("LambdaCommons"))
+                .jarName("list-coordinator.jar")
+                .handler("io.ulbrich.App")
+                .environment(coordinatorEnvironment)
+                .profile(props.getListCoordinatorProfile())
+                .build();
         stateMachine.grantStartSyncExecution(listCoordinator);
+        batchStateMachine.grantStartSyncExecution(listCoordinator);
+        if (asyncStateMachine != null) {
+            asyncStateMachine.grantStartExecution(listCoordinator);
+            resultTable.grantReadWriteData(listCoordinator);
+        }
+        if (props.getCoordinatorMode() == MyTestApiProps.CoordinatorMode.IN_PROCESS) {
+            fooList.grantInvoke(listCoordinator);
+            barList.grantInvoke(listCoordinator);
+        }
+        // Used to prime the SDK client during init
+        stateMachine.grant(listCoordinator, "states:DescribeStateMachine");
 
         someBucket.grantReadWrite(fooList);
         someBucket.grantRead(barList);
 
-        RestApi api = RestApi.Builder.create(this, "My-API")
+        boolean apiCache = props.getApiCacheTtl() != null;
+        RestApi.Builder apiBuilder = RestApi.Builder.create(this, "My-API")
                 .defaultCorsPreflightOptions(CorsOptions.builder().allowOrigins(Cors.ALL_ORIGINS).build())
                 .restApiName("My Api").description("Playground API.")
                 .defaultMethodOptions(MethodOptions.builder().authorizationType(AuthorizationType.IAM).build())
-                .build();
+                .minimumCompressionSize(props.getMinimumCompressionSize());
+        if (apiCache) {
+            apiBuilder.deployOptions(cachingStage(props));
+        }
+        RestApi api = apiBuilder.build();
 
-        api.getRoot()
-                .addResource("lambda")
-                .addResource("{id}")
-                .addMethod("GET", LambdaIntegration.Builder.create(listCoordinator).build());
+        // Keys cached responses by id and caller, IAM authorization happens before the cache is looked up
+        String identityParameter = "method.request.header." + props.getApiCacheIdentityHeader();
+        List<String> cacheKeyParameters = apiCache ? List.of(ID_PARAMETER, identityParameter) : null;
+        MethodOptions cachedMethodOptions = null;
+        if (apiCache) {
+            cachedMethodOptions = MethodOptions.builder()
+                    .requestParameters(Map.of(ID_PARAMETER, true, identityParameter, true))
+                    // Required parameters are only enforced with a validator. Without it, requests lacking the identity
+                    // header would share one cache entry per id across callers
+                    .requestValidator(api.addRequestValidator("CacheKeyValidator", RequestValidatorOptions.builder()
+                            .validateRequestParameters(true)
+                            .build()))
+                    .build();
+        }
+
+        Resource lambdaResource = api.getRoot().addResource("lambda");
+        Resource lambdaIdResource = lambdaResource.addResource("{id}");
+        lambdaIdResource.addMethod("GET", LambdaIntegration.Builder.create(listCoordinator)
+                .cacheKeyParameters(cacheKeyParameters)
+                .build(), cachedMethodOptions);
+        lambdaResource
+                .addResource("batch")
+                .addMethod("POST", LambdaIntegration.Builder.create(listCoordinator).build());
+        if (props.isAsyncExecution()) {
+            lambdaIdResource
+                    .addResource("executions")
+                    .addMethod("POST", LambdaIntegration.Builder.create(listCoordinator).build());
+            lambdaResource
+                    .addResource("executions")
+                    .addResource("{token}")
+                    .addMethod("GET", LambdaIntegration.Builder.create(listCoordinator).build());
+        }
 
         Resource sfnResource = api.getRoot().addResource("sfn");
         Resource sfnIdResource = sfnResource.addResource("{id}");
 
-        sfnIdResource.addMethod("GET",
-                StepFunctionsIntegration.startExecution(stateMachine, StepFunctionsExecutionIntegrationOptions.builder()
-                        .authorizer(true)
-                        .headers(true)
-                        .path(true)
-                        .querystring(true)
-                        .requestContext(RequestContext.builder()
-                                // NOTE: This corresponds to requestContext>identity>accountID, not requestContext>accountId in LAMBDA_PROXY
-                                // So it is the account id calling the API, not the api owner
-                                .accountId(true)
-                                .apiId(true)
-                                .apiKey(true)
-                                .authorizerPrincipalId(true)
-                                .caller(true)
-                                .cognitoAuthenticationProvider(true)
-                                .cognitoAuthenticationType(true)
-                                .cognitoIdentityId(true)
-                                .cognitoIdentityPoolId(true)
-                                .httpMethod(true)
-                                .requestId(true)
-                                .resourceId(true)
-                                .resourcePath(true)
-                                .sourceIp(true)
-                                .stage(true)
-                                .userArn(true)
-                                .user(true)
-                                .userAgent(true)
-                                .build())
-                        .build())
-        );
+        StepFunctionsExecutionIntegrationOptions.Builder sfnIntegration = StepFunctionsExecutionIntegrationOptions.builder()
+                .cacheKeyParameters(cacheKeyParameters);
+        if (props.isSfnFullRequestInput()) {
+            sfnIntegration
+                    .authorizer(true)
+                    .headers(true)
+                    .path(true)
+                    .querystring(true)
+                    .requestContext(RequestContext.builder()
+                            // NOTE: This corresponds to requestContext>identity>accountID, not requestContext>accountId in LAMBDA_PROXY
+                            // So it is the account id calling the API, not the api owner
+                            .accountId(true)
+                            .apiId(true)
+                            .apiKey(true)
+                            .authorizerPrincipalId(true)
+                            .caller(true)
+                            .cognitoAuthenticationProvider(true)
+                            .cognitoAuthenticationType(true)
+                            .cognitoIdentityId(true)
+                            .cognitoIdentityPoolId(true)
+                            .httpMethod(true)
+                            .requestId(true)
+                            .resourceId(true)
+                            .resourcePath(true)
+                            .sourceIp(true)
+                            .stage(true)
+                            .userArn(true)
+                            .user(true)
+                            .userAgent(true)
+                            .build());
+        } else {
+            sfnIntegration.requestTemplates(Map.of("application/json", compactRequestTemplate(stateMachine, props.getSfnInputFields())));
+        }
+        sfnIdResource.addMethod("GET", StepFunctionsIntegration.startExecution(stateMachine, sfnIntegration.build()), cachedMethodOptions);
     }
 
-    private Version createJavaFunctionVersion(String functionId, String directory, String jarName, String handlerMethod, Map<String, String> environment, boolean snapStart) { // TODO: Builder
-        if (!jarName.endsWith(".jar")) {
-            jarName += ".jar";
+    /**
+     * Replaces the request mapping the CDK generates, which serializes the complete request, with one that forwards
+     * only the id and {@code fields}: {@code {"id": ..., "accountId": ..., "userArn": ...}} by default.
+     */
+    private static String compactRequestTemplate(StateMachine stateMachine, Set<MyTestApiProps.SfnInputField> fields) {
+        StringBuilder template = new StringBuilder(setEscaped("id", "$input.params().path.get('id')"));
+        // "@@" is a placeholder for '"', like in the generated template (info/stepfunction_integration_request_mapping_template.txt)
+        StringBuilder input = new StringBuilder("{@@id@@:@@$id@@");
+        for (MyTestApiProps.SfnInputField field : fields) {
+            template.append(setEscaped(field.getName(), field.getExpression()));
+            input.append(",@@").append(field.getName()).append("@@:@@$").append(field.getName()).append("@@");
         }
-        List<String> commands = List.of(
-                "/bin/sh",
-                "-c",
-                String.format("cd %1$s && mvn clean install && cp /asset-input/%1$s/target/%2$s /asset-output/", directory, jarName)
-        );
-
-        BundlingOptions.Builder bundlingOptions = BundlingOptions.builder()
-                .command(commands)
-                .image(Runtime.JAVA_11.getBundlingImage())
-                .volumes(singletonList(
-                        // Mount local .m2 repo to avoid download all the dependencies again inside the container
-                        DockerVolume.builder()
-                                .hostPath(System.getProperty("user.home") + "/.m2/")
-                                .containerPath("/root/.m2/")
-                                .build()
-                ))
-                .user("root")
-                .outputType(ARCHIVED);
-
-        Function function = Function.Builder.create(this, functionId)
-                .runtime(Runtime.JAVA_11)
-                .code(Code.fromAsset("../software/", AssetOptions.builder()
-                        .bundling(bundlingOptions
-                                .command(commands)
-                                .build())
-                        .build()))
-                .handler(handlerMethod)
-                .environment(environment)
-                .memorySize(1024)
-                .timeout(Duration.seconds(10))
-                .logRetention(RetentionDays.ONE_WEEK)
+        input.append('}');
+        return template
+                .append("#set($executionInput = \"").append(input).append("\")\n")
+                .append(setEscaped("executionInput", "$executionInput.replaceAll(\"@@\", '\"')"))
+                .append("{\"stateMachineArn\": \"").append(stateMachine.getStateMachineArn()).append("\", ")
+                .append("\"input\": \"$executionInput\"}")
+                .toString();
+    }
+
+    /**
+     * @return a directive that sets {@code variable} to the value of {@code expression}, escaped for a JSON string
+     */
+    private static String setEscaped(String variable, String expression) {
+        // escapeJavaScript escapes single quotes as well, which is not valid in JSON
+        return "#set($" + variable + " = $util.escapeJavaScript(" + expression + ").replaceAll(\"\\\\'\", \"'\"))\n";
+    }
+
+    /**
+     * Provisions the stage cache and enables it on the cached methods only, GET methods are cached stage wide otherwise.
+     */
+    private static StageOptions cachingStage(MyTestApiProps props) {
+        // Ordered, so the method settings are synthesized in a stable order
+        Map<String, Duration> cacheTtls = new LinkedHashMap<>();
+        cacheTtls.put(LAMBDA_ID_GET, props.getApiCacheTtl());
+        cacheTtls.put(SFN_ID_GET, props.getApiCacheTtl());
+        props.getApiMethodCacheTtls().forEach((methodPath, cacheTtl) -> {
+            if (!cacheTtls.containsKey(methodPath)) {
+                throw new IllegalArgumentException("Not a cached method: " + methodPath + ", expected one of " + cacheTtls.keySet());
+            }
+            cacheTtls.put(methodPath, cacheTtl);
+        });
+        Map<String, MethodDeploymentOptions> methodOptions = new LinkedHashMap<>();
+        cacheTtls.forEach((methodPath, cacheTtl) -> methodOptions.put(methodPath, MethodDeploymentOptions.builder()
+                .cachingEnabled(true)
+                .cacheTtl(cacheTtl)
+                // The responses contain the data of the caller
+                .cacheDataEncrypted(true)
+                .build()));
+        return StageOptions.builder()
+                .cacheClusterEnabled(true)
+                .cacheClusterSize(props.getApiCacheClusterSize())
+                .methodOptions(methodOptions)
                 .build();
+    }
+
+    /**
+     * @param prefix keeps the construct ids unique when the branches are used by more than one state machine
+     */
+    private Parallel fetchAll(String prefix, Map<String, Alias> branches) {
+        return fetchAll(prefix, null, null, branches);
+    }
 
-        if (snapStart) {
-            ((CfnFunction) function.getNode().getDefaultChild()).addPropertyOverride("SnapStart", Map.of("ApplyOn", "PublishedVersions"));
-            // Publish a version
-            return Version.Builder.create(this, functionId + "Version").lambda(function).build();
+    /**
+     * Runs a branch per distinct function of {@code branches}, all get the same input. The output is one result per
+     * entry of {@code branches} nevertheless: a function listed more than once is invoked once and its result
+     * repeated at the later positions by the result selector.
+     *
+     * @param resultPath where the branch results are put into the state input, {@code null} replaces the input. See
+     *                   {@link #fetchAllResults(String, Map)} for where they end up
+     * @param branchTimeout fails a branch with {@code States.Timeout} once passed, {@code null} leaves it to the function
+     *                      timeout
+     */
+    private Parallel fetchAll(String prefix, String resultPath, Duration branchTimeout, Map<String, Alias> branches) {
+        Parallel.Builder parallel = Parallel.Builder.create(this, prefix + "Fetch All");
+        List<Alias> distinct = distinctFunctions(branches);
+        if (distinct.size() < branches.size()) {
+            String positions = branches.values().stream()
+                    .map(function -> "$[" + distinct.indexOf(function) + "]")
+                    .collect(Collectors.joining(", "));
+            parallel.resultSelector(Map.of(FANNED_OUT + ".$", "States.Array(" + positions + ")"));
+            if (resultPath == null) {
+                parallel.outputPath("$." + FANNED_OUT);
+            }
+        }
+        if (resultPath != null) {
+            parallel.resultPath(resultPath);
+        }
+        Parallel fetchAll = parallel.build();
+        for (Map.Entry<String, Alias> branch : branches.entrySet()) {
+            if (distinct.remove(branch.getValue())) {
+                fetchAll.branch(fetch(prefix + branch.getKey(), branch.getValue(), branchTimeout));
+            }
         }
-        return function.getCurrentVersion();
+        return fetchAll;
+    }
+
+    /**
+     * @return the path of the results of a {@code Fetch All} with {@code resultPath}
+     */
+    private static String fetchAllResults(String resultPath, Map<String, Alias> branches) {
+        return distinctFunctions(branches).size() < branches.size() ? resultPath + "." + FANNED_OUT : resultPath;
+    }
+
+    private static List<Alias> distinctFunctions(Map<String, Alias> branches) {
+        return new ArrayList<>(new LinkedHashSet<>(branches.values()));
+    }
+
+    private LambdaInvoke fetch(String id, Alias function, Duration timeout) {
+        LambdaInvoke.Builder invoke = LambdaInvoke.Builder.create(this, id)
+                .lambdaFunction(function)
+                .timeout(timeout);
+        if (branchOutput == MyTestApiProps.BranchOutput.BODY) {
+            // Drops the invocation envelope right in the task, so only the body is carried through the state machine
+            invoke.resultSelector(Map.of("body.$", "States.StringToJson($.Payload.body)"))
+                    .outputPath("$.body");
+        }
+        return invoke.build();
+    }
+
+    /**
+     * Writes the async execution result at {@code outputPath} under its token, in the format read by
+     * {@code DynamoDbResultStore}.
+     */
+    private DynamoPutItem storeResult(String id, Table resultTable, String status, String outputPath) {
+        return DynamoPutItem.Builder.create(this, id)
+                .table(resultTable)
+                .item(Map.of(
+                        "token", DynamoAttributeValue.fromString(JsonPath.stringAt("$.token")),
+                        "status", DynamoAttributeValue.fromString(status),
+                        "accountId", DynamoAttributeValue.fromString(JsonPath.stringAt("$.accountId")),
+                        "output", DynamoAttributeValue.fromString(JsonPath.jsonToString(JsonPath.objectAt(outputPath))),
+                        "expiresAt", DynamoAttributeValue.numberFromString(JsonPath.stringAt("$.expiresAt"))))
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,398 @@
+package io.ulbrich;
+
+import software.amazon.awscdk.Duration;
+import software.amazon.awscdk.services.stepfunctions.StateMachineType;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Configuration of {@link MyTestApi}, use {@link #builder()} to create it.
+ */
+public class MyTestApiProps {
+
+    /**
+     * How ListCoordinator fans out to the list providers on {@code /lambda/{id}}.
+     */
+    public enum CoordinatorMode {
+        /**
+         * Synchronous execution of the express state machine
+         */
+        STEP_FUNCTIONS,
+        /**
+         * Concurrent invocation of the list provider functions from within ListCoordinator, bypassing Step Functions
+         */
+        IN_PROCESS
+    }
+
+    /**
+     * What every {@code LambdaInvoke} branch of the state machines passes on.
+     */
+    public enum BranchOutput {
+        /**
+         * The complete invocation result: {@code ExecutedVersion}, {@code Payload} (status code, headers and body as
+         * escaped string) and {@code StatusCode}
+         */
+        ENVELOPE,
+        /**
+         * Only the body of the list provider response, as JSON
+         */
+        BODY
+    }
+
+    /**
+     * Request fields {@code /sfn/{id}} forwards into the execution input besides the id.
+     */
+    public enum SfnInputField {
+        ACCOUNT_ID("accountId", "$context.identity.accountId"),
+        USER_ARN("userArn", "$context.identity.userArn"),
+        CALLER("caller", "$context.identity.caller"),
+        SOURCE_IP("sourceIp", "$context.identity.sourceIp"),
+        USER_AGENT("userAgent", "$context.identity.userAgent"),
+        REQUEST_ID("requestId", "$context.requestId");
+
+        private final String name;
+        private final String expression;
+
+        SfnInputField(String name, String expression) {
+            this.name = name;
+            this.expression = expression;
+        }
+
+        /**
+         * @return the field name in the execution input
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the mapping template expression of the value
+         */
+        public String getExpression() {
+            return expression;
+        }
+    }
+
+    private final CoordinatorMode coordinatorMode;
+    private final boolean rawResponseOutput;
+    private final BranchOutput branchOutput;
+    private final int branchCompressionMinLength;
+    private final int batchConcurrency;
+    private final Duration responseCacheTtl;
+    private final boolean asyncExecution;
+    private final StateMachineType asyncStateMachineType;
+    private final Duration apiCacheTtl;
+    private final String apiCacheClusterSize;
+    private final String apiCacheIdentityHeader;
+    private final Map<String, Duration> apiMethodCacheTtls;
+    private final Integer minimumCompressionSize;
+    private final Set<SfnInputField> sfnInputFields;
+    private final boolean sfnFullRequestInput;
+    private final PerformanceProfile fooListProfile;
+    private final PerformanceProfile barListProfile;
+    private final PerformanceProfile listCoordinatorProfile;
+
+    private MyTestApiProps(Builder builder) {
+        this.coordinatorMode = builder.coordinatorMode;
+        this.rawResponseOutput = builder.rawResponseOutput;
+        this.branchOutput = builder.branchOutput;
+        this.branchCompressionMinLength = builder.branchCompressionMinLength;
+        this.batchConcurrency = builder.batchConcurrency;
+        this.responseCacheTtl = builder.responseCacheTtl;
+        this.asyncExecution = builder.asyncExecution;
+        this.asyncStateMachineType = builder.asyncStateMachineType;
+        this.apiCacheTtl = builder.apiCacheTtl;
+        this.apiCacheClusterSize = builder.apiCacheClusterSize;
+        this.apiCacheIdentityHeader = builder.apiCacheIdentityHeader;
+        this.apiMethodCacheTtls = Map.copyOf(builder.apiMethodCacheTtls);
+        this.minimumCompressionSize = builder.minimumCompressionSize;
+        // Enum order, so the request mapping template is stable
+        this.sfnInputFields = Collections.unmodifiableSet(EnumSet.copyOf(builder.sfnInputFields));
+        this.sfnFullRequestInput = builder.sfnFullRequestInput;
+        this.fooListProfile = builder.fooListProfile;
+        this.barListProfile = builder.barListProfile;
+        this.listCoordinatorProfile = builder.listCoordinatorProfile;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public CoordinatorMode getCoordinatorMode() {
+        return coordinatorMode;
+    }
+
+    public boolean isRawResponseOutput() {
+        return rawResponseOutput;
+    }
+
+    public BranchOutput getBranchOutput() {
+        return branchOutput;
+    }
+
+    public int getBranchCompressionMinLength() {
+        return branchCompressionMinLength;
+    }
+
+    public int getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
+    public Duration getResponseCacheTtl() {
+        return responseCacheTtl;
+    }
+
+    public boolean isAsyncExecution() {
+        return asyncExecution;
+    }
+
+    public StateMachineType getAsyncStateMachineType() {
+        return asyncStateMachineType;
+    }
+
+    /**
+     * @return {@code null} if the API has no stage cache
+     */
+    public Duration getApiCacheTtl() {
+        return apiCacheTtl;
+    }
+
+    public String getApiCacheClusterSize() {
+        return apiCacheClusterSize;
+    }
+
+    public String getApiCacheIdentityHeader() {
+        return apiCacheIdentityHeader;
+    }
+
+    public Map<String, Duration> getApiMethodCacheTtls() {
+        return apiMethodCacheTtls;
+    }
+
+    /**
+     * @return {@code null} if responses are not compressed
+     */
+    public Integer getMinimumCompressionSize() {
+        return minimumCompressionSize;
+    }
+
+    public Set<SfnInputField> getSfnInputFields() {
+        return sfnInputFields;
+    }
+
+    public boolean isSfnFullRequestInput() {
+        return sfnFullRequestInput;
+    }
+
+    public PerformanceProfile getFooListProfile() {
+        return fooListProfile;
+    }
+
+    public PerformanceProfile getBarListProfile() {
+        return barListProfile;
+    }
+
+    public PerformanceProfile getListCoordinatorProfile() {
+        return listCoordinatorProfile;
+    }
+
+    public static class Builder {
+        private CoordinatorMode coordinatorMode = CoordinatorMode.STEP_FUNCTIONS;
+        private boolean rawResponseOutput = false;
+        private BranchOutput branchOutput = BranchOutput.ENVELOPE;
+        private int branchCompressionMinLength = 0;
+        private int batchConcurrency = 10;
+        private Duration responseCacheTtl = Duration.seconds(0);
+        private boolean asyncExecution = false;
+        private StateMachineType asyncStateMachineType = StateMachineType.EXPRESS;
+        private Duration apiCacheTtl;
+        private String apiCacheClusterSize = "0.5";
+        private String apiCacheIdentityHeader = "X-Amz-Security-Token";
+        private final Map<String, Duration> apiMethodCacheTtls = new LinkedHashMap<>();
+        private Integer minimumCompressionSize;
+        private EnumSet<SfnInputField> sfnInputFields = EnumSet.of(SfnInputField.ACCOUNT_ID, SfnInputField.USER_ARN);
+        private boolean sfnFullRequestInput = false;
+        private PerformanceProfile fooListProfile = PerformanceProfile.lowLatency();
+        private PerformanceProfile barListProfile = PerformanceProfile.lowLatency();
+        private PerformanceProfile listCoordinatorProfile = PerformanceProfile.lowLatency();
+
+        public Builder coordinatorMode(CoordinatorMode coordinatorMode) {
+            this.coordinatorMode = coordinatorMode;
+            return this;
+        }
+
+        /**
+         * @param rawResponseOutput embed the coordinator output as JSON instead of an escaped string in {@code /lambda/{id}} responses
+         */
+        public Builder rawResponseOutput(boolean rawResponseOutput) {
+            this.rawResponseOutput = rawResponseOutput;
+            return this;
+        }
+
+        public Builder branchOutput(BranchOutput branchOutput) {
+            this.branchOutput = branchOutput;
+            return this;
+        }
+
+        /**
+         * @param branchCompressionMinLength list provider bodies of at least this many characters are gzipped on
+         *                                   their way through the state machines, 0 disables compression.
+         *                                   Requires {@link BranchOutput#BODY}
+         */
+        public Builder branchCompressionMinLength(int branchCompressionMinLength) {
+            if (branchCompressionMinLength < 0) {
+                throw new IllegalArgumentException("branchCompressionMinLength must not be negative: " + branchCompressionMinLength);
+            }
+            this.branchCompressionMinLength = branchCompressionMinLength;
+            return this;
+        }
+
+        /**
+         * @param batchConcurrency how many ids of a {@code /lambda/batch} request are resolved concurrently
+         */
+        public Builder batchConcurrency(int batchConcurrency) {
+            if (batchConcurrency < 1) {
+                throw new IllegalArgumentException("batchConcurrency must be positive: " + batchConcurrency);
+            }
+            this.batchConcurrency = batchConcurrency;
+            return this;
+        }
+
+        /**
+         * @param responseCacheTtl how long ListCoordinator reuses the response to a {@code /lambda/{id}} request for
+         *                         the same id and account, {@link Duration#seconds(Number) 0 seconds} (the default)
+         *                         disables the cache
+         */
+        public Builder responseCacheTtl(Duration responseCacheTtl) {
+            this.responseCacheTtl = responseCacheTtl;
+            return this;
+        }
+
+        /**
+         * @param asyncExecution deploy the async state machine, its result table and the
+         *                       {@code /lambda/{id}/executions} and {@code /lambda/executions/{token}} resources
+         */
+        public Builder asyncExecution(boolean asyncExecution) {
+            this.asyncExecution = asyncExecution;
+            return this;
+        }
+
+        /**
+         * @param asyncStateMachineType STANDARD for executions that may run longer than the 5 minutes of EXPRESS
+         */
+        public Builder asyncStateMachineType(StateMachineType asyncStateMachineType) {
+            this.asyncStateMachineType = asyncStateMachineType;
+            return this;
+        }
+
+        /**
+         * Enables the stage cache for {@code GET /lambda/{id}} and {@code GET /sfn/{id}}, keyed by the id and the
+         * {@link #apiCacheIdentityHeader(String) identity header}. Other methods, e.g. polling an async execution,
+         * are never cached.
+         *
+         * @param apiCacheTtl how long the responses are cached, at most 1 hour, {@code null} disables the cache
+         */
+        public Builder apiCacheTtl(Duration apiCacheTtl) {
+            if (apiCacheTtl != null && apiCacheTtl.toSeconds().longValue() > 3600) {
+                throw new IllegalArgumentException("apiCacheTtl must not exceed 3600 seconds: " + apiCacheTtl.toSeconds());
+            }
+            this.apiCacheTtl = apiCacheTtl;
+            return this;
+        }
+
+        /**
+         * @param apiCacheClusterSize in GB, e.g. "0.5" or "1.6"
+         */
+        public Builder apiCacheClusterSize(String apiCacheClusterSize) {
+            this.apiCacheClusterSize = apiCacheClusterSize;
+            return this;
+        }
+
+        /**
+         * API Gateway can only key its cache by request parameters, the IAM principal resolved from the signature is
+         * not available. Cached methods therefore require this header and add it to the cache key. The default
+         * {@code X-Amz-Security-Token} is sent with temporary credentials and identifies the session: callers with
+         * several sessions get several cache entries, callers signing with long-term access keys are rejected (400)
+         * on the cached methods by their request validator.
+         *
+         * @param apiCacheIdentityHeader request header that separates the cache entries of different callers
+         */
+        public Builder apiCacheIdentityHeader(String apiCacheIdentityHeader) {
+            this.apiCacheIdentityHeader = apiCacheIdentityHeader;
+            return this;
+        }
+
+        /**
+         * @param methodPath cached method to override the {@link #apiCacheTtl(Duration) TTL} for, e.g. {@code /sfn/{id}/GET}
+         */
+        public Builder apiMethodCacheTtl(String methodPath, Duration cacheTtl) {
+            if (cacheTtl.toSeconds().longValue() > 3600) {
+                throw new IllegalArgumentException("cacheTtl must not exceed 3600 seconds: " + cacheTtl.toSeconds());
+            }
+            this.apiMethodCacheTtls.put(methodPath, cacheTtl);
+            return this;
+        }
+
+        /**
+         * @param minimumCompressionSize responses of at least this many bytes are compressed for clients accepting
+         *                               gzip or deflate, {@code null} disables compression
+         */
+        public Builder minimumCompressionSize(Integer minimumCompressionSize) {
+            if (minimumCompressionSize != null && (minimumCompressionSize < 0 || minimumCompressionSize > 10485760)) {
+                throw new IllegalArgumentException("minimumCompressionSize must be between 0 and 10485760: " + minimumCompressionSize);
+            }
+            this.minimumCompressionSize = minimumCompressionSize;
+            return this;
+        }
+
+        /**
+         * @param sfnInputFields forwarded by {@code /sfn/{id}} besides the id, into an input like
+         *                       {@code {"id": ..., "accountId": ..., "userArn": ...}}
+         */
+        public Builder sfnInputFields(Set<SfnInputField> sfnInputFields) {
+            this.sfnInputFields = EnumSet.noneOf(SfnInputField.class);
+            this.sfnInputFields.addAll(sfnInputFields);
+            return this;
+        }
+
+        /**
+         * @param sfnFullRequestInput forward the complete request (body, headers, query string, path, authorizer and
+         *                            request context) instead of the {@link #sfnInputFields(Set) input fields}, see
+         *                            {@code info/stepfunction_input.json}
+         */
+        public Builder sfnFullRequestInput(boolean sfnFullRequestInput) {
+            this.sfnFullRequestInput = sfnFullRequestInput;
+            return this;
+        }
+
+        public Builder fooListProfile(PerformanceProfile fooListProfile) {
+            this.fooListProfile = fooListProfile;
+            return this;
+        }
+
+        public Builder barListProfile(PerformanceProfile barListProfile) {
+            this.barListProfile = barListProfile;
+            return this;
+        }
+
+        public Builder listCoordinatorProfile(PerformanceProfile listCoordinatorProfile) {
+            this.listCoordinatorProfile = listCoordinatorProfile;
+            return this;
+        }
+
+        public MyTestApiProps build() {
+            // Compressed bodies are only expanded by ListCoordinator when they are JSON, not escaped in the envelope
+            if (branchCompressionMinLength > 0 && branchOutput != BranchOutput.BODY) {
+                throw new IllegalArgumentException("branchCompressionMinLength requires branchOutput BODY");
+            }
+            if (!apiMethodCacheTtls.isEmpty() && apiCacheTtl == null) {
+                throw new IllegalArgumentException("apiMethodCacheTtl requires apiCacheTtl");
+            }
+            return new MyTestApiProps(this);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package io.ulbrich;
+
+import software.amazon.awscdk.Duration;
+import software.amazon.awscdk.services.applicationautoscaling.Schedule;
+import software.amazon.awscdk.services.lambda.Architecture;
+import software.amazon.awscdk.services.lambda.Runtime;
+import software.amazon.awscdk.services.lambda.RuntimeFamily;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runtime, sizing and JVM settings of a Java function, use {@link #builder()} to create it.
+ * <p>
+ * The defaults are the settings all functions were deployed with originally: Java 11 on x86, 1024 MB, 10 s timeout,
+ * no JVM options and no SnapStart.
+ * <p>
+ * Functions are invoked through their {@code live} alias, which can keep {@link Builder#provisionedConcurrency(int)
+ * provisioned concurrency} initialized, scaled with the utilization and on schedules. A request to the API invokes the
+ * coordinator and every list provider, so a burst hits all of them with cold starts at once.
+ */
+public class PerformanceProfile {
+    // Not available as constants in the CDK version used here
+    public static final Runtime JAVA_17 = new Runtime("java17", RuntimeFamily.JAVA);
+    public static final Runtime JAVA_21 = new Runtime("java21", RuntimeFamily.JAVA);
+
+    /**
+     * Stops at the C1 compiler: less time spent compiling, which pays off for the short, mostly cold invocations of
+     * these functions. The peak performance of C2 is rarely reached within the lifetime of an execution environment.
+     */
+    public static final String SHORT_INVOCATIONS = "-XX:+TieredCompilation -XX:TieredStopAtLevel=1";
+
+    private final Runtime runtime;
+    private final Architecture architecture;
+    private final int memorySize;
+    private final Duration timeout;
+    private final String javaToolOptions;
+    private final boolean snapStart;
+    private final Integer reservedConcurrency;
+    private final int provisionedConcurrency;
+    private final Integer maxProvisionedConcurrency;
+    private final double provisionedUtilizationTarget;
+    private final List<ConcurrencySchedule> concurrencySchedules;
+
+    private PerformanceProfile(Builder builder) {
+        this.runtime = builder.runtime;
+        this.architecture = builder.architecture;
+        this.memorySize = builder.memorySize;
+        this.timeout = builder.timeout;
+        this.javaToolOptions = builder.javaToolOptions;
+        this.snapStart = builder.snapStart;
+        this.reservedConcurrency = builder.reservedConcurrency;
+        this.provisionedConcurrency = builder.provisionedConcurrency;
+        this.maxProvisionedConcurrency = builder.maxProvisionedConcurrency;
+        this.provisionedUtilizationTarget = builder.provisionedUtilizationTarget;
+        this.concurrencySchedules = List.copyOf(builder.concurrencySchedules);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Java 21 on Graviton with C1 only and SnapStart, used by {@link MyTestApi} unless configured otherwise.
+     */
+    public static PerformanceProfile lowLatency() {
+        return builder()
+                .runtime(JAVA_21)
+                .architecture(Architecture.ARM_64)
+                .javaToolOptions(SHORT_INVOCATIONS)
+                .snapStart(true)
+                .build();
+    }
+
+    public Runtime getRuntime() {
+        return runtime;
+    }
+
+    public Architecture getArchitecture() {
+        return architecture;
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return value of {@code JAVA_TOOL_OPTIONS}, {@code null} if not set
+     */
+    public String getJavaToolOptions() {
+        return javaToolOptions;
+    }
+
+    public boolean isSnapStart() {
+        return snapStart;
+    }
+
+    /**
+     * @return concurrent executions reserved for and at the same time allowed at most, {@code null} if not limited
+     */
+    public Integer getReservedConcurrency() {
+        return reservedConcurrency;
+    }
+
+    /**
+     * @return execution environments kept initialized for the alias, the minimum capacity when auto scaled
+     */
+    public int getProvisionedConcurrency() {
+        return provisionedConcurrency;
+    }
+
+    /**
+     * @return maximum capacity of the provisioned concurrency auto scaling, {@code null} if not auto scaled
+     */
+    public Integer getMaxProvisionedConcurrency() {
+        return maxProvisionedConcurrency;
+    }
+
+    public double getProvisionedUtilizationTarget() {
+        return provisionedUtilizationTarget;
+    }
+
+    public List<ConcurrencySchedule> getConcurrencySchedules() {
+        return concurrencySchedules;
+    }
+
+    /**
+     * Capacity range of the provisioned concurrency auto scaling from a point in time on, e.g. for business hours.
+     */
+    public static class ConcurrencySchedule {
+        private final String name;
+        private final Schedule schedule;
+        private final int minCapacity;
+        private final int maxCapacity;
+
+        private ConcurrencySchedule(String name, Schedule schedule, int minCapacity, int maxCapacity) {
+            this.name = name;
+            this.schedule = schedule;
+            this.minCapacity = minCapacity;
+            this.maxCapacity = maxCapacity;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Schedule getSchedule() {
+            return schedule;
+        }
+
+        public int getMinCapacity() {
+            return minCapacity;
+        }
+
+        public int getMaxCapacity() {
+            return maxCapacity;
+        }
+    }
+
+    public static class Builder {
+        private Runtime runtime = Runtime.JAVA_11;
+        private Architecture architecture = Architecture.X86_64;
+        private int memorySize = 1024;
+        private Duration timeout = Duration.seconds(10);
+        private String javaToolOptions;
+        private boolean snapStart = false;
+        private Integer reservedConcurrency;
+        private int provisionedConcurrency = 0;
+        private Integer maxProvisionedConcurrency;
+        private double provisionedUtilizationTarget = 0.7;
+        private final List<ConcurrencySchedule> concurrencySchedules = new ArrayList<>();
+
+        /**
+         * @param runtime a Java runtime, e.g. {@link PerformanceProfile#JAVA_17} or {@link PerformanceProfile#JAVA_21}
+         */
+        public Builder runtime(Runtime runtime) {
+            if (runtime.getFamily() != RuntimeFamily.JAVA) {
+                throw new IllegalArgumentException("Not a Java runtime: " + runtime.getName());
+            }
+            this.runtime = runtime;
+            return this;
+        }
+
+        public Builder architecture(Architecture architecture) {
+            this.architecture = architecture;
+            return this;
+        }
+
+        /**
+         * @param memorySize in MB, CPU is allocated proportionally
+         */
+        public Builder memorySize(int memorySize) {
+            this.memorySize = memorySize;
+            return this;
+        }
+
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param javaToolOptions JVM options, e.g. {@link PerformanceProfile#SHORT_INVOCATIONS}
+         */
+        public Builder javaToolOptions(String javaToolOptions) {
+            this.javaToolOptions = javaToolOptions;
+            return this;
+        }
+
+        /**
+         * @param snapStart restore published versions from a snapshot of the initialized execution environment
+         */
+        public Builder snapStart(boolean snapStart) {
+            this.snapStart = snapStart;
+            return this;
+        }
+
+        /**
+         * @param reservedConcurrency caps the function, so a burst cannot take the concurrency of the account from
+         *                            the other functions. {@code null} for no limit
+         */
+        public Builder reservedConcurrency(Integer reservedConcurrency) {
+            if (reservedConcurrency != null && reservedConcurrency < 1) {
+                throw new IllegalArgumentException("reservedConcurrency must be at least 1, 0 would throttle every request: " + reservedConcurrency);
+            }
+            this.reservedConcurrency = reservedConcurrency;
+            return this;
+        }
+
+        /**
+         * @param provisionedConcurrency execution environments of the alias to keep initialized, 0 for none
+         */
+        public Builder provisionedConcurrency(int provisionedConcurrency) {
+            if (provisionedConcurrency < 0) {
+                throw new IllegalArgumentException("provisionedConcurrency must not be negative: " + provisionedConcurrency);
+            }
+            this.provisionedConcurrency = provisionedConcurrency;
+            return this;
+        }
+
+        /**
+         * Scales the provisioned concurrency between {@link #provisionedConcurrency(int)} and {@code maxCapacity} to
+         * keep its utilization at {@code utilizationTarget}.
+         *
+         * @param utilizationTarget share of the provisioned concurrency in use, above 0 and at most 1, e.g. 0.7
+         */
+        public Builder provisionedConcurrencyAutoScaling(int maxCapacity, double utilizationTarget) {
+            if (utilizationTarget <= 0 || utilizationTarget > 1) {
+                throw new IllegalArgumentException("utilizationTarget must be above 0 and at most 1: " + utilizationTarget);
+            }
+            this.maxProvisionedConcurrency = maxCapacity;
+            this.provisionedUtilizationTarget = utilizationTarget;
+            return this;
+        }
+
+        /**
+         * Sets the capacity range of the provisioned concurrency auto scaling at {@code schedule}, e.g. raises the
+         * minimum for business hours and lowers it again with a second schedule.
+         *
+         * @param name unique per function
+         */
+        public Builder provisionedConcurrencySchedule(String name, Schedule schedule, int minCapacity, int maxCapacity) {
+            if (minCapacity < 0 || maxCapacity < minCapacity) {
+                throw new IllegalArgumentException("Invalid capacity range of schedule " + name + ": " + minCapacity + " to " + maxCapacity);
+            }
+            concurrencySchedules.add(new ConcurrencySchedule(name, schedule, minCapacity, maxCapacity));
+            return this;
+        }
+
+        public PerformanceProfile build() {
+            if (maxProvisionedConcurrency != null && (provisionedConcurrency < 1 || maxProvisionedConcurrency < provisionedConcurrency)) {
+                throw new IllegalArgumentException("Auto scaling needs a provisioned concurrency of at least 1 and not above the maximum capacity "
+                        + maxProvisionedConcurrency + ": " + provisionedConcurrency);
+            }
+            if (!concurrencySchedules.isEmpty() && maxProvisionedConcurrency == null) {
+                throw new IllegalArgumentException("Concurrency schedules require provisionedConcurrencyAutoScaling");
+            }
+            if (reservedConcurrency != null) {
+                // Provisioned concurrency counts against the reserved concurrency
+                int maxProvisioned = Math.max(provisionedConcurrency, maxProvisionedConcurrency == null ? 0 : maxProvisionedConcurrency);
+                for (ConcurrencySchedule schedule : concurrencySchedules) {
+                    maxProvisioned = Math.max(maxProvisioned, schedule.maxCapacity);
+                }
+                if (maxProvisioned > reservedConcurrency) {
+                    throw new IllegalArgumentException("Provisioned concurrency of up to " + maxProvisioned
+                            + " exceeds the reserved concurrency " + reservedConcurrency);
+                }
+            }
+            return new PerformanceProfile(this);
+        }
+    }
+}
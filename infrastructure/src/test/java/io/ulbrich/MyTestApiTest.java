@@ -1,26 +1,461 @@
-// package com.myorg;
+package io.ulbrich;
 
-// import software.amazon.awscdk.App;
-// import software.amazon.awscdk.assertions.Template;
-// import java.io.IOException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import software.amazon.awscdk.App;
+import software.amazon.awscdk.AppProps;
+import software.amazon.awscdk.Duration;
+import software.amazon.awscdk.Stack;
+import software.amazon.awscdk.assertions.Match;
+import software.amazon.awscdk.assertions.Template;
+import software.amazon.awscdk.services.applicationautoscaling.CronOptions;
+import software.amazon.awscdk.services.applicationautoscaling.Schedule;
+import software.amazon.awscdk.services.lambda.Architecture;
+import software.amazon.awscdk.services.lambda.Runtime;
+import software.amazon.awscdk.services.stepfunctions.StateMachineType;
 
-// import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-// import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-// example test. To run these tests, uncomment this file, along with the
-// example resource in java/src/main/java/com/myorg/MyWidgetServiceStack.java
-// public class MyWidgetServiceTest {
+public class MyTestApiTest {
 
-//     @Test
-//     public void testStack() throws IOException {
-//         App app = new App();
-//         MyWidgetServiceStack stack = new MyWidgetServiceStack(app, "test");
+    private static Template synthesize(MyTestApiProps props) {
+        // Skip bundling, it needs docker and the function code is not part of the template assertions
+        App app = new App(AppProps.builder()
+                .context(Map.of("aws:cdk:bundling-stacks", List.of()))
+                .build());
+        Stack stack = new Stack(app, "test");
+        new MyTestApi(stack, "MyTestApi", props);
+        return Template.fromStack(stack);
+    }
 
-//         Template template = Template.fromStack(stack);
+    private static Template synthesize() {
+        return synthesize(MyTestApiProps.builder().build());
+    }
 
-//         template.hasResourceProperties("AWS::SQS::Queue", new HashMap<String, Number>() {{
-//           put("VisibilityTimeout", 300);
-//         }});
-//     }
-// }
+    /**
+     * @return the parsed Amazon States Language definition, with the references of its {@code Fn::Join} replaced by
+     * placeholders
+     */
+    @SuppressWarnings("unchecked")
+    private static JsonNode definition(Template template, String stateMachineId) {
+        Map<String, Object> stateMachine = (Map<String, Object>) template.findResources("AWS::StepFunctions::StateMachine").entrySet().stream()
+                .filter(e -> e.getKey().startsWith("MyTestApi" + stateMachineId))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElseThrow();
+        Object definition = ((Map<String, Object>) stateMachine.get("Properties")).get("DefinitionString");
+        StringBuilder json = new StringBuilder();
+        if (definition instanceof String) {
+            json.append(definition);
+        } else {
+            List<Object> join = (List<Object>) ((Map<String, Object>) definition).get("Fn::Join");
+            for (Object part : (List<Object>) join.get(1)) {
+                json.append(part instanceof String ? (String) part : "REF");
+            }
+        }
+        try {
+            return new ObjectMapper().readTree(json.toString());
+        } catch (JsonProcessingException e) {
+            throw new AssertionError("Invalid definition " + json, e);
+        }
+    }
+
+    /**
+     * @return the request mapping template of the {@code /sfn/{id}} integration, references replaced by placeholders
+     */
+    @SuppressWarnings("unchecked")
+    private static String sfnRequestTemplate(Template template) {
+        Map<String, Object> method = (Map<String, Object>) template.findResources("AWS::ApiGateway::Method", Map.of(
+                "Properties", Map.of("Integration", Match.objectLike(Map.of("Type", "AWS"))))).values().iterator().next();
+        Map<String, Object> integration = (Map<String, Object>) ((Map<String, Object>) method.get("Properties")).get("Integration");
+        Object requestTemplate = ((Map<String, Object>) integration.get("RequestTemplates")).get("application/json");
+        StringBuilder text = new StringBuilder();
+        List<Object> join = (List<Object>) ((Map<String, Object>) requestTemplate).get("Fn::Join");
+        for (Object part : (List<Object>) join.get(1)) {
+            text.append(part instanceof String ? (String) part : "REF");
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void functionsUseLowLatencyProfileByDefault() {
+        Template template = synthesize();
+
+        for (String handler : List.of("io.ulbrich.FooListHandler", "io.ulbrich.BarListHandler", "io.ulbrich.App")) {
+            template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                    "Handler", handler,
+                    "Runtime", "java21",
+                    "Architectures", List.of("arm64"),
+                    "MemorySize", 1024,
+                    "Timeout", 10,
+                    "SnapStart", Map.of("ApplyOn", "PublishedVersions"),
+                    "Environment", Map.of("Variables", Match.objectLike(Map.of(
+                            "JAVA_TOOL_OPTIONS", PerformanceProfile.SHORT_INVOCATIONS)))));
+        }
+    }
+
+    @Test
+    public void profileIsConfigurablePerFunction() {
+        Template template = synthesize(MyTestApiProps.builder()
+                .fooListProfile(PerformanceProfile.builder()
+                        .runtime(PerformanceProfile.JAVA_17)
+                        .memorySize(2048)
+                        .timeout(Duration.seconds(5))
+                        .build())
+                .build());
+
+        template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.FooListHandler",
+                "Runtime", "java17",
+                "Architectures", List.of("x86_64"),
+                "MemorySize", 2048,
+                "Timeout", 5,
+                "SnapStart", Match.absent(),
+                "Environment", Map.of("Variables", Match.objectLike(Map.of(
+                        "JAVA_TOOL_OPTIONS", Match.absent())))));
+        template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.BarListHandler",
+                "Runtime", "java21",
+                "SnapStart", Map.of("ApplyOn", "PublishedVersions")));
+    }
+
+    @Test
+    public void rejectsNonJavaRuntime() {
+        assertThrows(IllegalArgumentException.class, () -> PerformanceProfile.builder().runtime(Runtime.NODEJS_18_X));
+    }
+
+    @Test
+    public void functionsAreInvokedThroughLiveAlias() {
+        Template template = synthesize();
+
+        template.resourceCountIs("AWS::Lambda::Alias", 3);
+        template.resourceCountIs("AWS::Lambda::Version", 3);
+        template.allResourcesProperties("AWS::Lambda::Alias", Map.of(
+                "Name", "live",
+                "ProvisionedConcurrencyConfig", Match.absent()));
+        template.allResourcesProperties("AWS::Lambda::Function", Map.of(
+                "ReservedConcurrentExecutions", Match.absent()));
+        template.resourceCountIs("AWS::ApplicationAutoScaling::ScalableTarget", 0);
+    }
+
+    @Test
+    public void provisionedConcurrencyIsAutoScaled() {
+        Template template = synthesize(MyTestApiProps.builder()
+                .fooListProfile(PerformanceProfile.builder()
+                        .reservedConcurrency(50)
+                        .provisionedConcurrency(5)
+                        .provisionedConcurrencyAutoScaling(20, 0.6)
+                        .provisionedConcurrencySchedule("BusinessHours",
+                                Schedule.cron(CronOptions.builder().minute("0").hour("7").weekDay("MON-FRI").build()), 10, 20)
+                        .provisionedConcurrencySchedule("AfterHours",
+                                Schedule.cron(CronOptions.builder().minute("0").hour("19").weekDay("MON-FRI").build()), 5, 20)
+                        .build())
+                .build());
+
+        template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.FooListHandler",
+                "ReservedConcurrentExecutions", 50));
+        template.hasResourceProperties("AWS::Lambda::Alias", Map.of(
+                "Name", "live",
+                "ProvisionedConcurrencyConfig", Map.of("ProvisionedConcurrentExecutions", 5)));
+        template.resourceCountIs("AWS::ApplicationAutoScaling::ScalableTarget", 1);
+        template.hasResourceProperties("AWS::ApplicationAutoScaling::ScalableTarget", Map.of(
+                "ServiceNamespace", "lambda",
+                "ScalableDimension", "lambda:function:ProvisionedConcurrency",
+                "MinCapacity", 5,
+                "MaxCapacity", 20,
+                "ScheduledActions", List.of(
+                        Map.of(
+                                "ScheduledActionName", "BusinessHours",
+                                "Schedule", "cron(0 7 ? * MON-FRI *)",
+                                "ScalableTargetAction", Map.of("MinCapacity", 10, "MaxCapacity", 20)),
+                        Map.of(
+                                "ScheduledActionName", "AfterHours",
+                                "Schedule", "cron(0 19 ? * MON-FRI *)",
+                                "ScalableTargetAction", Map.of("MinCapacity", 5, "MaxCapacity", 20)))));
+        template.hasResourceProperties("AWS::ApplicationAutoScaling::ScalingPolicy", Map.of(
+                "PolicyType", "TargetTrackingScaling",
+                "TargetTrackingScalingPolicyConfiguration", Match.objectLike(Map.of(
+                        "TargetValue", 0.6,
+                        "PredefinedMetricSpecification", Map.of(
+                                "PredefinedMetricType", "LambdaProvisionedConcurrencyUtilization")))));
+    }
+
+    @Test
+    public void concurrencyRejectsInconsistentSettings() {
+        assertThrows(IllegalArgumentException.class, () -> PerformanceProfile.builder().reservedConcurrency(0));
+        assertThrows(IllegalArgumentException.class, () -> PerformanceProfile.builder()
+                .reservedConcurrency(10)
+                .provisionedConcurrency(20)
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> PerformanceProfile.builder()
+                .reservedConcurrency(10)
+                .provisionedConcurrency(5)
+                .provisionedConcurrencyAutoScaling(20, 0.7)
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> PerformanceProfile.builder()
+                .provisionedConcurrencyAutoScaling(20, 0.7)
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> PerformanceProfile.builder()
+                .provisionedConcurrency(2)
+                .provisionedConcurrencySchedule("Never", Schedule.rate(Duration.days(1)), 1, 2)
+                .build());
+    }
+
+    @Test
+    public void architectureIsConfigurable() {
+        Template template = synthesize(MyTestApiProps.builder()
+                .listCoordinatorProfile(PerformanceProfile.builder()
+                        .architecture(Architecture.ARM_64)
+                        .build())
+                .build());
+
+        template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.App",
+                "Runtime", "java11",
+                "Architectures", List.of("arm64")));
+    }
+
+    @Test
+    public void batchStateMachineMapsIdsWithBoundedConcurrency() {
+        Template template = synthesize(MyTestApiProps.builder()
+                .batchConcurrency(4)
+                .build());
+
+        template.resourceCountIs("AWS::StepFunctions::StateMachine", 2);
+        JsonNode fetchEach = definition(template, "MyBatchStateMachine").path("States").path("Fetch Each");
+        assertEquals("Map", fetchEach.path("Type").asText());
+        assertEquals("$.ids", fetchEach.path("ItemsPath").asText());
+        assertEquals(4, fetchEach.path("MaxConcurrency").asInt());
+        assertEquals("$$.Map.Item.Value", fetchEach.path("Parameters").path("id.$").asText());
+        assertEquals("$.accountId", fetchEach.path("Parameters").path("accountId.$").asText());
+        assertEquals("Batch Fetch All", fetchEach.path("Iterator").path("StartAt").asText());
+        template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.App",
+                "Environment", Map.of("Variables", Match.objectLike(Map.of(
+                        "BATCH_CONCURRENCY", "4")))));
+        template.hasResourceProperties("AWS::ApiGateway::Method", Map.of(
+                "HttpMethod", "POST",
+                "AuthorizationType", "AWS_IAM",
+                "Integration", Match.objectLike(Map.of("Type", "AWS_PROXY"))));
+    }
+
+    @Test
+    public void asyncExecutionIsOptIn() {
+        Template template = synthesize();
+
+        template.resourceCountIs("AWS::DynamoDB::Table", 0);
+        template.resourceCountIs("AWS::StepFunctions::StateMachine", 2);
+    }
+
+    @Test
+    public void asyncExecutionStoresResultsWithTtl() {
+        Template template = synthesize(MyTestApiProps.builder()
+                .asyncExecution(true)
+                .asyncStateMachineType(StateMachineType.STANDARD)
+                .build());
+
+        template.hasResourceProperties("AWS::DynamoDB::Table", Map.of(
+                "KeySchema", List.of(Map.of("AttributeName", "token", "KeyType", "HASH")),
+                "TimeToLiveSpecification", Map.of("AttributeName", "expiresAt", "Enabled", true)));
+        template.hasResourceProperties("AWS::StepFunctions::StateMachine", Map.of(
+                "StateMachineType", "STANDARD"));
+        JsonNode states = definition(template, "MyAsyncStateMachine").path("States");
+        assertEquals("$.output", states.path("Async Fetch All").path("ResultPath").asText());
+        assertEquals("Store Result", states.path("Async Fetch All").path("Next").asText());
+        assertEquals("Store Failure", states.path("Async Fetch All").path("Catch").path(0).path("Next").asText());
+        assertEquals("SUCCEEDED", states.path("Store Result").path("Parameters").path("Item").path("status").path("S").asText());
+        assertEquals("FAILED", states.path("Store Failure").path("Parameters").path("Item").path("status").path("S").asText());
+        // A hanging branch times out into Store Failure instead of leaving the execution RUNNING
+        assertEquals(60, states.path("Async Fetch All").path("Branches").path(0).path("States").path("Async FetchFoo")
+                .path("TimeoutSeconds").asInt());
+        assertTrue(definition(template, "MyStateMachine").path("States").path("Fetch All").path("Branches").path(0)
+                .path("States").path("FetchFoo").path("TimeoutSeconds").isMissingNode());
+        template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.App",
+                "Environment", Map.of("Variables", Match.objectLike(Map.of(
+                        "ASYNC_SM_ARN", Match.anyValue(),
+                        "RESULT_TABLE", Match.anyValue())))));
+        template.hasResourceProperties("AWS::ApiGateway::Resource", Map.of("PathPart", "executions"));
+        template.hasResourceProperties("AWS::ApiGateway::Resource", Map.of("PathPart", "{token}"));
+    }
+
+    @Test
+    public void responseCacheTtlIsConfigurable() {
+        // Off unless the deployment opts in
+        synthesize().hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.App",
+                "Environment", Map.of("Variables", Match.objectLike(Map.of(
+                        "RESPONSE_CACHE_TTL_SECONDS", "0")))));
+        synthesize(MyTestApiProps.builder().responseCacheTtl(Duration.seconds(5)).build())
+                .hasResourceProperties("AWS::Lambda::Function", Map.of(
+                        "Handler", "io.ulbrich.App",
+                        "Environment", Map.of("Variables", Match.objectLike(Map.of(
+                                "RESPONSE_CACHE_TTL_SECONDS", "5")))));
+    }
+
+    @Test
+    public void fetchAllInvokesEveryFunctionOnce() {
+        Template template = synthesize(MyTestApiProps.builder().asyncExecution(true).build());
+
+        JsonNode fetchAll = definition(template, "MyStateMachine").path("States").path("Fetch All");
+        assertEquals(2, fetchAll.path("Branches").size());
+        assertEquals("FetchFoo", fetchAll.path("Branches").path(0).path("StartAt").asText());
+        assertEquals("FetchBar", fetchAll.path("Branches").path(1).path("StartAt").asText());
+        // The coordinator still gets a result per position, Foo's at the first and the third
+        assertEquals("States.Array($[0], $[1], $[0])", fetchAll.path("ResultSelector").path("branches.$").asText());
+        assertEquals("$.branches", fetchAll.path("OutputPath").asText());
+
+        JsonNode batchFetchAll = definition(template, "MyBatchStateMachine").path("States").path("Fetch Each")
+                .path("Iterator").path("States").path("Batch Fetch All");
+        assertEquals(2, batchFetchAll.path("Branches").size());
+        assertEquals("$.branches", batchFetchAll.path("OutputPath").asText());
+
+        JsonNode asyncStates = definition(template, "MyAsyncStateMachine").path("States");
+        assertEquals(2, asyncStates.path("Async Fetch All").path("Branches").size());
+        assertEquals("$.output", asyncStates.path("Async Fetch All").path("ResultPath").asText());
+        assertTrue(asyncStates.path("Async Fetch All").path("OutputPath").isMissingNode());
+        assertEquals("States.JsonToString($.output.branches)", asyncStates.path("Store Result")
+                .path("Parameters").path("Item").path("output").path("S.$").asText());
+    }
+
+    @Test
+    public void branchesPassTheInvocationEnvelopeByDefault() {
+        JsonNode fetchFoo = definition(synthesize(), "MyStateMachine").path("States").path("Fetch All")
+                .path("Branches").path(0).path("States").path("FetchFoo");
+
+        assertTrue(fetchFoo.path("ResultSelector").isMissingNode());
+        assertTrue(fetchFoo.path("OutputPath").isMissingNode());
+    }
+
+    @Test
+    public void branchesCanPassOnlyTheBody() {
+        Template template = synthesize(MyTestApiProps.builder()
+                .branchOutput(MyTestApiProps.BranchOutput.BODY)
+                .branchCompressionMinLength(8192)
+                .build());
+
+        for (String stateMachine : List.of("MyStateMachine", "MyBatchStateMachine")) {
+            JsonNode states = definition(template, stateMachine).path("States");
+            JsonNode fetchAll = stateMachine.equals("MyStateMachine")
+                    ? states.path("Fetch All")
+                    : states.path("Fetch Each").path("Iterator").path("States").path("Batch Fetch All");
+            for (JsonNode branch : fetchAll.path("Branches")) {
+                JsonNode task = branch.path("States").path(branch.path("StartAt").asText());
+                assertEquals("States.StringToJson($.Payload.body)", task.path("ResultSelector").path("body.$").asText());
+                assertEquals("$.body", task.path("OutputPath").asText());
+            }
+        }
+        template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.App",
+                "Environment", Map.of("Variables", Match.objectLike(Map.of(
+                        "BRANCH_OUTPUT", "BODY")))));
+        template.hasResourceProperties("AWS::Lambda::Function", Map.of(
+                "Handler", "io.ulbrich.FooListHandler",
+                "Environment", Map.of("Variables", Match.objectLike(Map.of(
+                        "BODY_COMPRESSION_MIN_LENGTH", "8192")))));
+    }
+
+    @Test
+    public void compressionRequiresBodyOutput() {
+        assertThrows(IllegalArgumentException.class, () -> MyTestApiProps.builder()
+                .branchCompressionMinLength(8192)
+                .build());
+    }
+
+    @Test
+    public void apiCacheAndCompressionAreOptIn() {
+        Template template = synthesize();
+
+        template.hasResourceProperties("AWS::ApiGateway::Stage", Map.of(
+                "CacheClusterEnabled", Match.absent(),
+                "MethodSettings", Match.absent()));
+        template.hasResourceProperties("AWS::ApiGateway::RestApi", Map.of(
+                "MinimumCompressionSize", Match.absent()));
+        template.resourceCountIs("AWS::ApiGateway::RequestValidator", 0);
+    }
+
+    @Test
+    public void apiCacheIsKeyedByIdAndCaller() {
+        Template template = synthesize(MyTestApiProps.builder()
+                .apiCacheTtl(Duration.seconds(30))
+                .apiMethodCacheTtl("/sfn/{id}/GET", Duration.seconds(10))
+                .minimumCompressionSize(1024)
+                .build());
+
+        template.hasResourceProperties("AWS::ApiGateway::RestApi", Map.of("MinimumCompressionSize", 1024));
+        template.hasResourceProperties("AWS::ApiGateway::Stage", Map.of(
+                "CacheClusterEnabled", true,
+                "CacheClusterSize", "0.5",
+                "MethodSettings", Match.arrayWith(List.of(
+                        Match.objectLike(Map.of("HttpMethod", "GET", "ResourcePath", "/~1lambda~1{id}",
+                                "CachingEnabled", true, "CacheTtlInSeconds", 30, "CacheDataEncrypted", true)),
+                        Match.objectLike(Map.of("HttpMethod", "GET", "ResourcePath", "/~1sfn~1{id}",
+                                "CachingEnabled", true, "CacheTtlInSeconds", 10, "CacheDataEncrypted", true))))));
+        Map<String, Object> cachedMethod = Map.of(
+                "HttpMethod", "GET",
+                "RequestParameters", Map.of(
+                        "method.request.path.id", true,
+                        "method.request.header.X-Amz-Security-Token", true),
+                "Integration", Match.objectLike(Map.of(
+                        "CacheKeyParameters", List.of("method.request.path.id", "method.request.header.X-Amz-Security-Token"))));
+        template.resourcePropertiesCountIs("AWS::ApiGateway::Method", cachedMethod, 2);
+
+        // Without a validator API Gateway would not enforce the required identity header
+        Map<String, Map<String, Object>> validators = template.findResources("AWS::ApiGateway::RequestValidator",
+                Map.of("Properties", Map.of("ValidateRequestParameters", true)));
+        assertEquals(1, validators.size());
+        Map<String, Object> validatorId = Map.of("Ref", validators.keySet().iterator().next());
+        template.resourcePropertiesCountIs("AWS::ApiGateway::Method", Map.of(
+                "HttpMethod", "GET",
+                "RequestParameters", Match.objectLike(Map.of("method.request.header.X-Amz-Security-Token", true)),
+                "RequestValidatorId", validatorId), 2);
+        template.resourcePropertiesCountIs("AWS::ApiGateway::Method", Map.of("RequestValidatorId", Match.anyValue()), 2);
+    }
+
+    @Test
+    public void apiCacheRejectsUnknownMethods() {
+        MyTestApiProps props = MyTestApiProps.builder()
+                .apiCacheTtl(Duration.seconds(30))
+                .apiMethodCacheTtl("/lambda/batch/POST", Duration.seconds(10))
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> synthesize(props));
+        assertThrows(IllegalArgumentException.class, () -> MyTestApiProps.builder()
+                .apiMethodCacheTtl("/sfn/{id}/GET", Duration.seconds(10))
+                .build());
+    }
+
+    @Test
+    public void sfnForwardsCompactInputByDefault() {
+        String requestTemplate = sfnRequestTemplate(synthesize());
+
+        assertTrue(requestTemplate.contains("{@@id@@:@@$id@@,@@accountId@@:@@$accountId@@,@@userArn@@:@@$userArn@@}"), requestTemplate);
+        assertTrue(requestTemplate.contains("#set($accountId = $util.escapeJavaScript($context.identity.accountId)"), requestTemplate);
+        assertTrue(requestTemplate.contains("\"stateMachineArn\": \"REF\""), requestTemplate);
+        assertFalse(requestTemplate.contains("header"), requestTemplate);
+    }
+
+    @Test
+    public void sfnInputFieldsAreConfigurable() {
+        String requestTemplate = sfnRequestTemplate(synthesize(MyTestApiProps.builder()
+                .sfnInputFields(Set.of(MyTestApiProps.SfnInputField.SOURCE_IP, MyTestApiProps.SfnInputField.ACCOUNT_ID))
+                .build()));
+
+        assertTrue(requestTemplate.contains("{@@id@@:@@$id@@,@@accountId@@:@@$accountId@@,@@sourceIp@@:@@$sourceIp@@}"), requestTemplate);
+        assertFalse(requestTemplate.contains("userArn"), requestTemplate);
+
+        String fullTemplate = sfnRequestTemplate(synthesize(MyTestApiProps.builder().sfnFullRequestInput(true).build()));
+        assertTrue(fullTemplate.contains("#set($includeHeaders = true)"), fullTemplate);
+        assertTrue(fullTemplate.contains("@@userAgent@@"), fullTemplate);
+    }
+}
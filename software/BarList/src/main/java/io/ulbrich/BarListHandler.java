@@ -0,0 +1,11 @@
+package io.ulbrich;
+
+/**
+ * Lambda entry point of the Bar list.
+ */
+public class BarListHandler extends ListProviderHandler {
+
+    public BarListHandler() {
+        super(new BarListProvider());
+    }
+}
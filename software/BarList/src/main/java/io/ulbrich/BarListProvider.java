@@ -0,0 +1,17 @@
+package io.ulbrich;
+
+/**
+ * The Bar list, the location is the public IP of the execution environment.
+ */
+public class BarListProvider implements ListProvider {
+
+    @Override
+    public String name() {
+        return "Bar";
+    }
+
+    @Override
+    public String body(ListRequest request, String upstream) {
+        return "{ \"message\": \"Hello from Bar\", \"location\": \"" + upstream + "\" }";
+    }
+}
@@ -0,0 +1,29 @@
+package io.ulbrich;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BarListHandlerTest {
+
+    @Test
+    public void servesTheBarList() throws IOException {
+        ListProvider provider = new BarListHandler().getProvider();
+        assertTrue(provider instanceof BarListProvider);
+        assertEquals("Bar", provider.name());
+        assertEquals(ListProviderHandler.LOCATION_URL, provider.upstreamUrl());
+
+        ListRequest request = ListRequest.read(new ByteArrayInputStream("{\"id\":\"1234\"}".getBytes(UTF_8)));
+        JsonObject body = JsonParser.parseString(provider.body(request, "203.0.113.7")).getAsJsonObject();
+        assertEquals(2, body.size());
+        assertEquals("Hello from Bar", body.get("message").getAsString());
+        assertEquals("203.0.113.7", body.get("location").getAsString());
+    }
+}
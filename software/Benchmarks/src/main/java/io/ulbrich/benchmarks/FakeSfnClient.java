@@ -0,0 +1,36 @@
+package io.ulbrich.benchmarks;
+
+import software.amazon.awssdk.services.sfn.SfnClient;
+import software.amazon.awssdk.services.sfn.model.StartSyncExecutionRequest;
+import software.amazon.awssdk.services.sfn.model.StartSyncExecutionResponse;
+import software.amazon.awssdk.services.sfn.model.SyncExecutionStatus;
+
+/**
+ * {@link SfnClient} whose synchronous executions immediately succeed with a canned output.
+ */
+public class FakeSfnClient implements SfnClient {
+    private final String output;
+
+    public FakeSfnClient(String output) {
+        this.output = output;
+    }
+
+    @Override
+    public StartSyncExecutionResponse startSyncExecution(StartSyncExecutionRequest request) {
+        return StartSyncExecutionResponse.builder()
+                .executionArn(request.stateMachineArn() + ":" + request.name())
+                .status(SyncExecutionStatus.SUCCEEDED)
+                .input(request.input())
+                .output(output)
+                .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
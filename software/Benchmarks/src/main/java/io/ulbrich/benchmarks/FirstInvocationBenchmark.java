@@ -0,0 +1,114 @@
+package io.ulbrich.benchmarks;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import io.ulbrich.App;
+import io.ulbrich.FooListProvider;
+import io.ulbrich.ListProviderHandler;
+import io.ulbrich.StepFunctionsCoordinator;
+import io.ulbrich.local.LocalContext;
+import io.ulbrich.local.RedirectedListProvider;
+import io.ulbrich.local.StubHttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Latency of the first invocation in a fresh JVM, with and without the SnapStart priming hooks having run.
+ * <p>
+ * Every fork measures a single invocation. With {@code primed=true} the handler runs {@code beforeCheckpoint} and
+ * {@code afterRestore} first, so the invocation starts from the state a restored snapshot starts from: classes loaded
+ * and the request path compiled.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class FirstInvocationBenchmark {
+    private static final String STATE_MACHINE_ARN = "arn:aws:states:eu-central-1:123456789012:stateMachine:MyStateMachine";
+
+    @State(Scope.Benchmark)
+    public static class ListProviderState {
+        @Param({"false", "true"})
+        boolean primed;
+
+        StubHttpServer upstream;
+        ListProviderHandler handler;
+        Context context;
+        byte[] input;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            upstream = new StubHttpServer("1.2.3.4");
+            handler = new ListProviderHandler(new RedirectedListProvider(new FooListProvider(), upstream.url()));
+            if (primed) {
+                handler.beforeCheckpoint(null);
+                handler.afterRestore(null);
+            }
+            context = LocalContext.fixed("FooListFunction");
+            input = Fixtures.stepFunctionInput();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            upstream.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ListCoordinatorState {
+        @Param({"false", "true"})
+        boolean primed;
+
+        App handler;
+        Context context;
+        APIGatewayProxyRequestEvent input;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            String output;
+            try (InputStream stateMachineOutput = App.class.getResourceAsStream("/priming/state_machine_output.json")) {
+                output = new String(stateMachineOutput.readAllBytes(), UTF_8);
+            }
+            handler = new App(new StepFunctionsCoordinator(new FakeSfnClient(output), STATE_MACHINE_ARN));
+            if (primed) {
+                handler.beforeCheckpoint(null);
+                handler.afterRestore(null);
+            }
+            context = LocalContext.fixed("ListCoordinatorFunction");
+            input = Fixtures.lambdaProxyInput();
+        }
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream listProvider(ListProviderState state) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        state.handler.handleRequest(new ByteArrayInputStream(state.input), output, state.context);
+        return output;
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent listCoordinator(ListCoordinatorState state) {
+        return state.handler.handleRequest(state.input, state.context);
+    }
+}
@@ -0,0 +1,50 @@
+package io.ulbrich.benchmarks;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Events built from the fixtures in {@code info/}.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return the LAMBDA_PROXY event ListCoordinator receives, see {@code info/lambda_proxy_input.json}
+     */
+    public static APIGatewayProxyRequestEvent lambdaProxyInput() {
+        try (InputStreamReader reader = new InputStreamReader(open("/lambda_proxy_input.json"), UTF_8)) {
+            return new Gson().fromJson(reader, APIGatewayProxyRequestEvent.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the state machine input the list providers receive, see {@code info/stepfunction_input.json}
+     */
+    public static byte[] stepFunctionInput() {
+        try (InputStream input = open("/stepfunction_input.json")) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream open(String resource) {
+        InputStream input = Fixtures.class.getResourceAsStream(resource);
+        if (input == null) {
+            throw new IllegalStateException("Missing fixture " + resource);
+        }
+        return input;
+    }
+}
@@ -0,0 +1,74 @@
+package io.ulbrich.benchmarks;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import io.ulbrich.App;
+import io.ulbrich.BarListProvider;
+import io.ulbrich.FooListProvider;
+import io.ulbrich.ListProviderHandler;
+import io.ulbrich.StepFunctionsCoordinator;
+import io.ulbrich.local.LocalContext;
+import io.ulbrich.local.LocalStateMachine;
+import io.ulbrich.local.RedirectedListProvider;
+import io.ulbrich.local.StubHttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Drives ListCoordinator with the LAMBDA_PROXY fixture against a fake {@code SfnClient}.
+ * <p>
+ * The canned execution output is produced once by the real list provider handlers on a {@link LocalStateMachine},
+ * so its size and shape match the output of the {@code Fetch All} Parallel state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListCoordinatorBenchmark {
+    private static final String STATE_MACHINE_ARN = "arn:aws:states:eu-central-1:123456789012:stateMachine:MyStateMachine";
+
+    private App listCoordinator;
+    private Context context;
+    private APIGatewayProxyRequestEvent input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String output;
+        try (StubHttpServer upstream = new StubHttpServer("1.2.3.4")) {
+            ListProviderHandler fooList = new ListProviderHandler(new RedirectedListProvider(new FooListProvider(), upstream.url()));
+            ListProviderHandler barList = new ListProviderHandler(new RedirectedListProvider(new BarListProvider(), upstream.url()));
+            output = new LocalStateMachine(List.of(
+                    new LocalStateMachine.Branch("FetchFoo", fooList),
+                    new LocalStateMachine.Branch("FetchBar", barList),
+                    new LocalStateMachine.Branch("FetchFoo2", fooList)), LocalContext.DEFAULT_TIMEOUT, false)
+                    .execute(new String(Fixtures.stepFunctionInput(), UTF_8))
+                    .getOutput();
+        }
+        listCoordinator = new App(new StepFunctionsCoordinator(new FakeSfnClient(output), STATE_MACHINE_ARN));
+        context = LocalContext.fixed("ListCoordinatorFunction");
+        input = Fixtures.lambdaProxyInput();
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent listCoordinator() {
+        return listCoordinator.handleRequest(input, context);
+    }
+}
@@ -0,0 +1,71 @@
+package io.ulbrich.benchmarks;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import io.ulbrich.BarListProvider;
+import io.ulbrich.FooListProvider;
+import io.ulbrich.ListProviderHandler;
+import io.ulbrich.local.LocalContext;
+import io.ulbrich.local.RedirectedListProvider;
+import io.ulbrich.local.StubHttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the FooList/BarList handlers with the state machine input fixture against a local upstream stub.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListProviderBenchmark {
+    private StubHttpServer upstream;
+    private ListProviderHandler fooList;
+    private ListProviderHandler barList;
+    private Context context;
+    private byte[] input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        upstream = new StubHttpServer("1.2.3.4");
+        fooList = new ListProviderHandler(new RedirectedListProvider(new FooListProvider(), upstream.url()));
+        barList = new ListProviderHandler(new RedirectedListProvider(new BarListProvider(), upstream.url()));
+        context = LocalContext.fixed("FooListFunction");
+        input = Fixtures.stepFunctionInput();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        upstream.close();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream fooList() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        fooList.handleRequest(new ByteArrayInputStream(input), output, context);
+        return output;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream barList() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        barList.handleRequest(new ByteArrayInputStream(input), output, context);
+        return output;
+    }
+}
@@ -0,0 +1,120 @@
+#!/bin/bash
+# Cold start of a list provider outside of Lambda: starts the handler under the Lambda runtime interface emulator
+# (aws-lambda-rie on the PATH), invokes it twice and reports the time to the first and the second response plus the peak
+# resident memory of the function process.
+#
+#   ./startup.sh jvm|primed|native [FooList|BarList]
+#
+#   jvm     the JVM with the runtime interface client, like the managed Java runtime
+#   primed  a JVM restored from a CRaC checkpoint taken after init and one invocation, the closest local approximation of
+#           a SnapStart restore (optimistic: SnapStart snapshots before the first invocation). Needs a CRaC enabled JDK
+#           in CRAC_JAVA_HOME
+#   native  the executable built with mvn -Pnative package, as it would run on provided.al2
+#
+# RUNS (default 5) sets the number of cold starts per mode. The upstream resource is fetched for real.
+set -euo pipefail
+
+MODE=${1:?"usage: $0 jvm|primed|native [FooList|BarList]"}
+MODULE=${2:-FooList}
+RUNS=${RUNS:-5}
+
+cd "$(dirname "$0")/../$MODULE"
+case $MODULE in
+    FooList) ARTIFACT=foo-list HANDLER=io.ulbrich.FooListHandler ;;
+    BarList) ARTIFACT=bar-list HANDLER=io.ulbrich.BarListHandler ;;
+    *) echo "Unknown module $MODULE" >&2; exit 1 ;;
+esac
+
+EVENT=../../info/stepfunction_input.json
+ENDPOINT=http://localhost:8080/2015-03-31/functions/function/invocations
+RUNTIME_CLIENT=com.amazonaws.services.lambda.runtime.api.client.AWSLambda
+WORK=$(mktemp -d)
+trap 'pkill -f aws-lambda-rie >/dev/null 2>&1 || true; rm -rf "$WORK"' EXIT
+
+export POWERTOOLS_METRICS_NAMESPACE=Benchmarks POWERTOOLS_TRACE_DISABLED=true PHASE_METRICS_ENABLED=false LOG_LEVEL=WARN
+
+classpath() {
+    # The classpath the native image is built from, so all modes run the same code
+    if [ ! -f target/native-classpath.txt ]; then
+        mvn -q -Pnative dependency:build-classpath -Dmdep.outputFile=target/native-classpath.txt >&2
+    fi
+    echo "target/classes:$(cat target/native-classpath.txt)"
+}
+
+now_millis() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+invoke() {
+    curl -sf -o /dev/null -d @"$EVENT" "$ENDPOINT"
+}
+
+# Starts the emulator with the command in $WORK/bootstrap and waits until it accepts requests
+start_emulator() {
+    aws-lambda-rie "$WORK/bootstrap" > "$WORK/rie.log" 2>&1 &
+    until curl -s -o /dev/null http://localhost:8080/; do
+        sleep 0.05
+    done
+}
+
+stop_emulator() {
+    pkill -f aws-lambda-rie >/dev/null 2>&1 || true
+    while pgrep -f aws-lambda-rie >/dev/null; do
+        sleep 0.05
+    done
+}
+
+# Writes the function command to $WORK/bootstrap, the function records its pid for the memory measurement
+bootstrap() {
+    printf '#!/bin/sh\necho $$ > %s/pid\nexec %s\n' "$WORK" "$*" > "$WORK/bootstrap"
+    chmod 755 "$WORK/bootstrap"
+}
+
+measure() {
+    start_emulator
+    local start first second pid
+    start=$(now_millis)
+    invoke
+    first=$(( $(now_millis) - start ))
+    start=$(now_millis)
+    invoke
+    second=$(( $(now_millis) - start ))
+    if [ "${1:-}" = restored ]; then
+        # The restored process keeps the command line of the checkpointed one, not the pid of the bootstrap
+        pid=$(pgrep -n -f CRaCCheckpointTo)
+    else
+        pid=$(cat "$WORK/pid")
+    fi
+    echo "$MODE $MODULE first=${first}ms second=${second}ms maxRss=$(awk '/VmHWM/ {print int($2 / 1024)}' "/proc/$pid/status")MB"
+    stop_emulator
+}
+
+case $MODE in
+    jvm)
+        bootstrap java -cp "$(classpath)" $RUNTIME_CLIENT $HANDLER
+        for _ in $(seq "$RUNS"); do measure; done
+        ;;
+    primed)
+        : "${CRAC_JAVA_HOME:?CRAC_JAVA_HOME must point to a CRaC enabled JDK}"
+        # The checkpoint runs the priming hooks of the handler, like SnapStart does before taking the snapshot
+        bootstrap "$CRAC_JAVA_HOME/bin/java" -XX:CRaCCheckpointTo="$WORK/checkpoint" -cp "$(classpath)" $RUNTIME_CLIENT $HANDLER
+        start_emulator
+        invoke
+        "$CRAC_JAVA_HOME/bin/jcmd" "$(cat "$WORK/pid")" JDK.checkpoint >/dev/null
+        stop_emulator
+        bootstrap "$CRAC_JAVA_HOME/bin/java" -XX:CRaCRestoreFrom="$WORK/checkpoint"
+        for _ in $(seq "$RUNS"); do measure restored; done
+        ;;
+    native)
+        if [ ! -x "target/$ARTIFACT" ]; then
+            echo "target/$ARTIFACT missing, build it with mvn -Pnative package" >&2
+            exit 1
+        fi
+        bootstrap "$PWD/target/$ARTIFACT" $HANDLER
+        for _ in $(seq "$RUNS"); do measure; done
+        ;;
+    *)
+        echo "Unknown mode $MODE" >&2
+        exit 1
+        ;;
+esac
@@ -0,0 +1,11 @@
+package io.ulbrich;
+
+/**
+ * Lambda entry point of the Foo list.
+ */
+public class FooListHandler extends ListProviderHandler {
+
+    public FooListHandler() {
+        super(new FooListProvider());
+    }
+}
@@ -0,0 +1,17 @@
+package io.ulbrich;
+
+/**
+ * The Foo list, the location is the public IP of the execution environment.
+ */
+public class FooListProvider implements ListProvider {
+
+    @Override
+    public String name() {
+        return "Foo";
+    }
+
+    @Override
+    public String body(ListRequest request, String upstream) {
+        return "{ \"message\": \"Hello from Foo\", \"location\": \"" + upstream + "\" }";
+    }
+}
@@ -0,0 +1,95 @@
+package io.ulbrich;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compresses large branch bodies on their way through the state machine, whose payloads are size limited and
+ * serialized at every state transition.
+ * <p>
+ * A compressed body is the JSON object {@code {"encoding": "gzip", "data": "<base64 of the gzipped body>"}}, so it
+ * still passes {@code States.StringToJson}. The coordinator {@link #expand(String) expands} the branch results before
+ * they are returned to the client.
+ */
+public final class CompressedPayload {
+    private static final String ENCODING = "gzip";
+    // Compressed bodies start with it, cheap to look for before parsing a whole output
+    private static final String MARKER = "\"encoding\":\"" + ENCODING + "\"";
+
+    private CompressedPayload() {
+    }
+
+    /**
+     * @return {@code body} compressed, or unchanged if it is shorter than {@code minLength} characters
+     */
+    public static String compress(String body, int minLength) {
+        if (minLength <= 0 || body.length() < minLength) {
+            return body;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body.getBytes(UTF_8));
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new UncheckedIOException(e);
+        }
+        return "{" + MARKER + ",\"data\":\"" + Base64.getEncoder().encodeToString(compressed.toByteArray()) + "\"}";
+    }
+
+    /**
+     * @param output JSON array of branch results, possibly nested (batches)
+     * @return {@code output} with every compressed body replaced by the JSON it contains
+     */
+    public static String expand(String output) {
+        if (output == null || !output.contains(MARKER)) {
+            return output;
+        }
+        return expand(JsonParser.parseString(output)).toString();
+    }
+
+    private static JsonElement expand(JsonElement element) {
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, expand(array.get(i)));
+            }
+            return array;
+        }
+        if (!element.isJsonObject()) {
+            return element;
+        }
+        JsonObject object = element.getAsJsonObject();
+        if (object.size() == 2 && object.has("data") && ENCODING.equals(stringOrNull(object.get("encoding")))) {
+            return JsonParser.parseString(decompress(object.get("data").getAsString()));
+        }
+        for (String name : object.keySet()) {
+            object.add(name, expand(object.get(name)));
+        }
+        return object;
+    }
+
+    private static String decompress(String data) {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(data)))) {
+            return new String(gzip.readAllBytes(), UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt compressed payload", e);
+        }
+    }
+
+    private static String stringOrNull(JsonElement element) {
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+}
@@ -0,0 +1,44 @@
+package io.ulbrich;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * Decides for which requests the payload is logged, dumping every payload costs duration and log ingestion at volume.
+ * <p>
+ * Errors are meant to be logged with their payload regardless of the sampling decision.
+ * The rate is configured via {@code PAYLOAD_LOG_SAMPLE_RATE} (0 to 1, default 0.01) when created with
+ * {@link #fromEnvironment()}.
+ * <p>
+ * Execution environments restored from the same SnapStart snapshot share the random state, so it has to be
+ * {@link #reseed() reseeded} after a restore.
+ */
+public final class PayloadSampler {
+    private static final double DEFAULT_RATE = 0.01;
+
+    private final double rate;
+    private final Random random = new Random();
+
+    public PayloadSampler(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("rate must be between 0 and 1: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    public static PayloadSampler fromEnvironment() {
+        String rate = System.getenv("PAYLOAD_LOG_SAMPLE_RATE");
+        return new PayloadSampler(rate == null ? DEFAULT_RATE : Double.parseDouble(rate));
+    }
+
+    /**
+     * @return whether the payload of the current request is logged
+     */
+    public boolean sample() {
+        return rate > 0 && random.nextDouble() < rate;
+    }
+
+    public void reseed() {
+        random.setSeed(new SecureRandom().nextLong());
+    }
+}
@@ -0,0 +1,216 @@
+package io.ulbrich;
+
+import java.io.PrintStream;
+import java.util.Objects;
+
+/**
+ * Records how long the phases of an invocation took and writes them as
+ * <a href="https://docs.aws.amazon.com/AmazonCloudWatch/latest/monitoring/CloudWatch_Embedded_Metric_Format_Specification.html">Embedded Metric Format</a>
+ * log lines, which CloudWatch turns into metrics.
+ * <p>
+ * Every sample has the dimensions {@code Function}, {@code Branch} and {@code Outcome}, the phase is the metric name.
+ * Besides durations, occurrences like cache hits can be {@link #count(String, String, String) counted}.
+ * Samples are kept in preallocated arrays, so recording does not allocate. {@link #flush()} writes one EMF document
+ * per distinct branch and outcome, it has to be called before the handler returns.
+ * <p>
+ * The namespace is taken from {@code POWERTOOLS_METRICS_NAMESPACE} like for {@code @Metrics},
+ * {@code PHASE_METRICS_ENABLED=false} turns recording off.
+ */
+public final class PhaseMetrics {
+    public static final String SUCCESS = "Success";
+    public static final String FAILURE = "Failure";
+    /**
+     * Branch of phases that are not specific to one list provider
+     */
+    public static final String ALL_BRANCHES = "All";
+
+    // Fits into the bit mask used by flush, more samples per invocation trigger an early flush
+    private static final int CAPACITY = 64;
+
+    private final String namespace;
+    private final String function;
+    private final PrintStream out;
+
+    private final String[] phases = new String[CAPACITY];
+    private final String[] branches = new String[CAPACITY];
+    private final String[] outcomes = new String[CAPACITY];
+    // Nanoseconds for phases, 1 for counts
+    private final long[] durations = new long[CAPACITY];
+    private final boolean[] counts = new boolean[CAPACITY];
+    private int size;
+    private final StringBuilder document = new StringBuilder(1024);
+
+    /**
+     * @param out receives the EMF documents, {@code null} disables recording
+     */
+    public PhaseMetrics(String namespace, String function, PrintStream out) {
+        this.namespace = namespace;
+        this.function = function;
+        this.out = out;
+    }
+
+    /**
+     * @return the recorder of this execution environment, configured from the environment
+     */
+    public static PhaseMetrics instance() {
+        return Holder.INSTANCE;
+    }
+
+    public static PhaseMetrics disabled() {
+        return new PhaseMetrics(null, null, null);
+    }
+
+    static PhaseMetrics fromEnvironment() {
+        if ("false".equalsIgnoreCase(System.getenv("PHASE_METRICS_ENABLED"))) {
+            return disabled();
+        }
+        return new PhaseMetrics(
+                Objects.requireNonNullElse(System.getenv("POWERTOOLS_METRICS_NAMESPACE"), "MyTestApi"),
+                Objects.requireNonNullElse(System.getenv("AWS_LAMBDA_FUNCTION_NAME"), "local"),
+                System.out);
+    }
+
+    /**
+     * Records the time since {@code startNanos}, which was taken with {@link System#nanoTime()}.
+     */
+    public synchronized void record(String phase, String branch, String outcome, long startNanos) {
+        if (out == null) {
+            return;
+        }
+        add(phase, branch, outcome, System.nanoTime() - startNanos, false);
+    }
+
+    /**
+     * Records one occurrence of {@code metric}, written with the unit {@code Count}. A metric name must either be
+     * counted or used as phase.
+     */
+    public synchronized void count(String metric, String branch, String outcome) {
+        if (out == null) {
+            return;
+        }
+        add(metric, branch, outcome, 1, true);
+    }
+
+    private void add(String metric, String branch, String outcome, long value, boolean count) {
+        if (size == CAPACITY) {
+            flush();
+        }
+        phases[size] = metric;
+        branches[size] = branch;
+        outcomes[size] = outcome;
+        durations[size] = value;
+        counts[size] = count;
+        size++;
+    }
+
+    public synchronized void flush() {
+        if (size == 0) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        long written = 0;
+        for (int i = 0; i < size; i++) {
+            if ((written & (1L << i)) != 0) {
+                continue;
+            }
+            // EMF documents have a single set of dimension values, so samples are grouped by branch and outcome
+            long group = 0;
+            for (int j = i; j < size; j++) {
+                if (branches[j].equals(branches[i]) && outcomes[j].equals(outcomes[i])) {
+                    group |= 1L << j;
+                }
+            }
+            written |= group;
+            writeDocument(timestamp, group, branches[i], outcomes[i]);
+            out.println(document);
+        }
+        discard();
+        if (document.capacity() > 64 * 1024) {
+            document.setLength(0);
+            document.trimToSize();
+        }
+    }
+
+    /**
+     * Drops the samples recorded since the last flush, e.g. by priming invocations.
+     */
+    public synchronized void discard() {
+        for (int i = 0; i < size; i++) {
+            phases[i] = null;
+            branches[i] = null;
+            outcomes[i] = null;
+        }
+        size = 0;
+    }
+
+    private void writeDocument(long timestamp, long group, String branch, String outcome) {
+        document.setLength(0);
+        document.append("{\"_aws\":{\"Timestamp\":").append(timestamp)
+                .append(",\"CloudWatchMetrics\":[{\"Namespace\":");
+        appendString(namespace);
+        document.append(",\"Dimensions\":[[\"Function\",\"Branch\",\"Outcome\"]],\"Metrics\":[");
+        boolean first = true;
+        for (int i = 0; i < size; i++) {
+            if (isFirstOfPhase(group, i)) {
+                document.append(first ? "" : ",").append("{\"Name\":");
+                appendString(phases[i]);
+                document.append(counts[i] ? ",\"Unit\":\"Count\"}" : ",\"Unit\":\"Milliseconds\"}");
+                first = false;
+            }
+        }
+        document.append("]}]},\"Function\":");
+        appendString(function);
+        document.append(",\"Branch\":");
+        appendString(branch);
+        document.append(",\"Outcome\":");
+        appendString(outcome);
+        for (int i = 0; i < size; i++) {
+            if (!isFirstOfPhase(group, i)) {
+                continue;
+            }
+            document.append(',');
+            appendString(phases[i]);
+            document.append(":[");
+            for (int j = i; j < size; j++) {
+                if ((group & (1L << j)) != 0 && phases[j].equals(phases[i])) {
+                    document.append(j == i ? "" : ",");
+                    if (counts[j]) {
+                        document.append(durations[j]);
+                    } else {
+                        document.append(durations[j] / 1_000_000.0);
+                    }
+                }
+            }
+            document.append(']');
+        }
+        document.append('}');
+    }
+
+    private boolean isFirstOfPhase(long group, int index) {
+        if ((group & (1L << index)) == 0) {
+            return false;
+        }
+        for (int i = 0; i < index; i++) {
+            if ((group & (1L << i)) != 0 && phases[i].equals(phases[index])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendString(String value) {
+        document.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                document.append('\\');
+            }
+            document.append(c);
+        }
+        document.append('"');
+    }
+
+    private static class Holder {
+        static final PhaseMetrics INSTANCE = fromEnvironment();
+    }
+}
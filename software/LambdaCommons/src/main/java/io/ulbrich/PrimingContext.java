@@ -0,0 +1,84 @@
+package io.ulbrich;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+/**
+ * Lambda {@link Context} for dry-run invocations before a SnapStart checkpoint, there is no real invocation to
+ * take it from. Log output is discarded.
+ */
+public final class PrimingContext implements Context {
+    public static final PrimingContext INSTANCE = new PrimingContext();
+
+    private static final LambdaLogger DISCARDING_LOGGER = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void log(byte[] message) {
+        }
+    };
+
+    private PrimingContext() {
+    }
+
+    @Override
+    public String getAwsRequestId() {
+        return "priming";
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return System.getenv("AWS_LAMBDA_LOG_GROUP_NAME");
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return System.getenv("AWS_LAMBDA_LOG_STREAM_NAME");
+    }
+
+    @Override
+    public String getFunctionName() {
+        return System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return System.getenv("AWS_LAMBDA_FUNCTION_VERSION");
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return null;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+        // Enough for anything that derives deadlines from it
+        return 10_000;
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        String memory = System.getenv("AWS_LAMBDA_FUNCTION_MEMORY_SIZE");
+        return memory != null ? Integer.parseInt(memory) : 0;
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return DISCARDING_LOGGER;
+    }
+}
@@ -0,0 +1,314 @@
+package io.ulbrich;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory cache whose entries expire after a fixed time to live.
+ * <ul>
+ *   <li>Concurrent or back-to-back misses for the same key share a single load (single flight), every caller can
+ *   bound how long it waits for the load of another</li>
+ *   <li>Entries that expired less than {@code staleWindow} ago are still served while one background refresh
+ *   replaces them (stale-while-revalidate), which keeps the load off the request path</li>
+ *   <li>At most {@code maxEntries} are kept, expired entries are evicted first, then the ones expiring soonest</li>
+ *   <li>Loaded values that are not {@code cacheable} are handed to the callers sharing the load, but not kept</li>
+ * </ul>
+ * Configured via {@code <PREFIX>_TTL_SECONDS}, {@code <PREFIX>_STALE_SECONDS} and {@code <PREFIX>_MAX_ENTRIES}
+ * with {@link Builder#fromEnvironment(String)}.
+ */
+public class TtlCache<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws IOException;
+    }
+
+    public enum Outcome {
+        /**
+         * Served from the cache, possibly stale
+         */
+        HIT,
+        /**
+         * Loaded by the caller
+         */
+        MISS,
+        /**
+         * Waited for the load of a concurrent caller
+         */
+        COALESCED
+    }
+
+    /**
+     * Notified about the outcome of every lookup, on the calling thread.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onGet(Outcome outcome);
+    }
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Loader<K, V> loader;
+    private final long ttlNanos;
+    private final long staleWindowNanos;
+    private final int maxEntries;
+    private final Predicate<? super V> cacheable;
+    private final Listener listener;
+    private final Executor refreshExecutor;
+    private final LongSupplier nanoClock;
+
+    private TtlCache(Builder<K, V> builder) {
+        this.loader = builder.loader;
+        this.ttlNanos = builder.ttl.toNanos();
+        this.staleWindowNanos = builder.staleWindow.toNanos();
+        this.maxEntries = builder.maxEntries;
+        this.cacheable = builder.cacheable;
+        this.listener = builder.listener;
+        this.refreshExecutor = builder.refreshExecutor != null ? builder.refreshExecutor : Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ttl-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.nanoClock = builder.nanoClock;
+    }
+
+    public static <K, V> Builder<K, V> builder(Loader<K, V> loader) {
+        return new Builder<>(loader);
+    }
+
+    /**
+     * @return a builder of a cache without loader, values are loaded with {@link #get(Object, Loader)}
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>(null);
+    }
+
+    public static <K, V> TtlCache<K, V> fromEnvironment(String prefix, Loader<K, V> loader) {
+        return TtlCache.builder(loader).fromEnvironment(prefix).build();
+    }
+
+    /**
+     * @throws IllegalStateException if the cache was built without a loader
+     */
+    public V get(K key) throws IOException {
+        if (loader == null) {
+            throw new IllegalStateException("No loader, use get(key, loader)");
+        }
+        return get(key, loader);
+    }
+
+    /**
+     * Loads missing values with {@code loader} instead of the loader of the cache, e.g. when loading depends on the
+     * invocation. Background refreshes outlive the calling invocation, they use the loader of the cache if it has one.
+     */
+    public V get(K key, Loader<K, V> loader) throws IOException {
+        return get(key, loader, null);
+    }
+
+    /**
+     * Like {@link #get(Object, Loader)}, but waits at most {@code maxWait} for the load of a concurrent caller, e.g.
+     * the time left of the waiting invocation. The load itself is not bounded, it runs on the thread of the first
+     * caller.
+     *
+     * @param maxWait {@code null} waits as long as the load takes
+     * @throws IOException also if {@code maxWait} passed before the concurrent load completed
+     */
+    public V get(K key, Loader<K, V> loader, Duration maxWait) throws IOException {
+        long now = nanoClock.getAsLong();
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            if (now - entry.loadedAt < ttlNanos) {
+                listener.onGet(Outcome.HIT);
+                return entry.value;
+            }
+            if (now - entry.loadedAt < ttlNanos + staleWindowNanos) {
+                refreshInBackground(key, this.loader != null ? this.loader : loader);
+                listener.onGet(Outcome.HIT);
+                return entry.value;
+            }
+        }
+        return await(load(key, loader, true), maxWait);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void refreshInBackground(K key, Loader<K, V> loader) {
+        if (!inFlight.containsKey(key)) {
+            refreshExecutor.execute(() -> load(key, loader, false));
+        }
+    }
+
+    private CompletableFuture<V> load(K key, Loader<K, V> loader, boolean notify) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            if (notify) {
+                listener.onGet(Outcome.COALESCED);
+            }
+            return running;
+        }
+        if (notify) {
+            listener.onGet(Outcome.MISS);
+        }
+        try {
+            V value = loader.load(key);
+            if (cacheable.test(value)) {
+                put(key, value);
+            }
+            created.complete(value);
+        } catch (IOException | RuntimeException e) {
+            created.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, created);
+        }
+        return created;
+    }
+
+    private void put(K key, V value) {
+        long now = nanoClock.getAsLong();
+        entries.put(key, new Entry<>(value, now));
+        if (entries.size() > maxEntries) {
+            entries.entrySet().removeIf(e -> now - e.getValue().loadedAt >= ttlNanos + staleWindowNanos);
+        }
+        while (entries.size() > maxEntries) {
+            entries.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().loadedAt))
+                    .ifPresent(oldest -> entries.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future, Duration maxWait) throws IOException {
+        try {
+            return maxWait == null ? future.get() : future.get(Math.max(0, maxWait.toNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out after " + maxWait.toMillis() + " ms waiting for cache load", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for cache load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public static class Builder<K, V> {
+        private final Loader<K, V> loader;
+        private Duration ttl = Duration.ofMinutes(5);
+        private Duration staleWindow = Duration.ofMinutes(1);
+        private int maxEntries = 16;
+        private Predicate<? super V> cacheable = value -> true;
+        private Listener listener = outcome -> {
+        };
+        private Executor refreshExecutor;
+        private LongSupplier nanoClock = System::nanoTime;
+
+        private Builder(Loader<K, V> loader) {
+            this.loader = loader;
+        }
+
+        public Builder<K, V> ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * @param staleWindow {@link Duration#ZERO} disables stale-while-revalidate
+         */
+        public Builder<K, V> staleWindow(Duration staleWindow) {
+            this.staleWindow = staleWindow;
+            return this;
+        }
+
+        public Builder<K, V> maxEntries(int maxEntries) {
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public Builder<K, V> cacheable(Predicate<? super V> cacheable) {
+            this.cacheable = cacheable;
+            return this;
+        }
+
+        public Builder<K, V> listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public Builder<K, V> refreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        public Builder<K, V> nanoClock(LongSupplier nanoClock) {
+            this.nanoClock = nanoClock;
+            return this;
+        }
+
+        /**
+         * Overrides the values set so far with the ones configured in the environment.
+         */
+        public Builder<K, V> fromEnvironment(String prefix) {
+            return fromEnvironment(prefix, System::getenv);
+        }
+
+        /**
+         * Like {@link #fromEnvironment(String)}, with the variables looked up in {@code environment}.
+         */
+        public Builder<K, V> fromEnvironment(String prefix, UnaryOperator<String> environment) {
+            String ttl = environment.apply(prefix + "_TTL_SECONDS");
+            if (ttl != null) {
+                ttl(Duration.ofSeconds(Long.parseLong(ttl)));
+            }
+            String staleWindow = environment.apply(prefix + "_STALE_SECONDS");
+            if (staleWindow != null) {
+                staleWindow(Duration.ofSeconds(Long.parseLong(staleWindow)));
+            }
+            String maxEntries = environment.apply(prefix + "_MAX_ENTRIES");
+            if (maxEntries != null) {
+                maxEntries(Integer.parseInt(maxEntries));
+            }
+            return this;
+        }
+
+        public TtlCache<K, V> build() {
+            return new TtlCache<>(this);
+        }
+    }
+}
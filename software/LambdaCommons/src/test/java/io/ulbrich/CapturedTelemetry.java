@@ -0,0 +1,86 @@
+package io.ulbrich;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.junit.rules.ExternalResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Captures what a handler would send to CloudWatch: the EMF documents of {@link #metrics()} and the log events of
+ * the root logger. Used to check that priming before a SnapStart checkpoint records neither, while the requests after
+ * the restore do.
+ * <pre>{@code
+ * @Rule
+ * public final CapturedTelemetry telemetry = new CapturedTelemetry();
+ * }</pre>
+ */
+public class CapturedTelemetry extends ExternalResource {
+    private final ByteArrayOutputStream emf = new ByteArrayOutputStream();
+    private final PhaseMetrics metrics = new PhaseMetrics("Tests", "test-function", new PrintStream(emf, true, UTF_8));
+    private final List<LogEvent> logEvents = new CopyOnWriteArrayList<>();
+    private final AbstractAppender appender = new AbstractAppender("captured", null, null, true, Property.EMPTY_ARRAY) {
+        @Override
+        public void append(LogEvent event) {
+            logEvents.add(event.toImmutable());
+        }
+    };
+
+    /**
+     * @return metrics writing their documents into this capture
+     */
+    public PhaseMetrics metrics() {
+        return metrics;
+    }
+
+    public void assertNothingRecorded() {
+        assertEquals("", emf.toString(UTF_8));
+        assertEquals(List.of(), logEvents);
+    }
+
+    /**
+     * Asserts that every phase was reported and that exactly one message was logged, starting with {@code logPrefix}.
+     */
+    public void assertRecorded(List<String> phases, String logPrefix) {
+        String documents = emf.toString(UTF_8);
+        for (String phase : phases) {
+            assertTrue(documents, documents.contains("\"" + phase + "\""));
+        }
+        assertLogged(logPrefix);
+    }
+
+    /**
+     * Asserts that exactly one message was logged, starting with {@code prefix}.
+     */
+    public void assertLogged(String prefix) {
+        assertEquals(logEvents.toString(), 1, logEvents.size());
+        String message = logEvents.get(0).getMessage().getFormattedMessage();
+        assertTrue(message, message.startsWith(prefix));
+    }
+
+    @Override
+    protected void before() {
+        appender.start();
+        LoggerContext loggerContext = (LoggerContext) LogManager.getContext(false);
+        loggerContext.getConfiguration().getRootLogger().addAppender(appender, null, null);
+        loggerContext.updateLoggers();
+    }
+
+    @Override
+    protected void after() {
+        LoggerContext loggerContext = (LoggerContext) LogManager.getContext(false);
+        loggerContext.getConfiguration().getRootLogger().removeAppender(appender.getName());
+        loggerContext.updateLoggers();
+        appender.stop();
+    }
+}
@@ -0,0 +1,86 @@
+package io.ulbrich;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+public class CompressedPayloadTest {
+    private static final String BODY = "{ \"message\": \"Hello from Foo\", \"location\": \"203.0.113.7\", "
+            + "\"text\": \"Gr\u00fc\u00dfe \u65e5\u672c \\\"quoted\\\" \\\\ \\n\" }";
+
+    @Test
+    public void compressesIntoGzipEnvelope() throws IOException {
+        JsonObject compressed = JsonParser.parseString(CompressedPayload.compress(BODY, 16)).getAsJsonObject();
+
+        assertEquals(2, compressed.size());
+        assertEquals("gzip", compressed.get("encoding").getAsString());
+        byte[] data = Base64.getDecoder().decode(compressed.get("data").getAsString());
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            assertEquals(BODY, new String(gzip.readAllBytes(), UTF_8));
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        String compressed = CompressedPayload.compress(BODY, 16);
+
+        assertEquals(JsonParser.parseString("[" + BODY + "]"),
+                JsonParser.parseString(CompressedPayload.expand("[" + compressed + "]")));
+    }
+
+    @Test
+    public void bodiesBelowThresholdPassThrough() {
+        assertSame(BODY, CompressedPayload.compress(BODY, BODY.length() + 1));
+        assertSame(BODY, CompressedPayload.compress(BODY, 0));
+        assertEquals("gzip", JsonParser.parseString(CompressedPayload.compress(BODY, BODY.length()))
+                .getAsJsonObject().get("encoding").getAsString());
+    }
+
+    @Test
+    public void outputsWithoutCompressedBodiesAreReturnedUnchanged() {
+        String output = "[" + BODY + "," + BODY + "]";
+
+        assertSame(output, CompressedPayload.expand(output));
+        assertEquals(null, CompressedPayload.expand(null));
+    }
+
+    @Test
+    public void expandsBodiesOfBatchesAndMixedOutputs() {
+        String compressed = CompressedPayload.compress(BODY, 16);
+        String output = "[[" + compressed + ",{\"short\":true}],[" + compressed + "," + compressed + "]]";
+
+        assertEquals(JsonParser.parseString("[[" + BODY + ",{\"short\":true}],[" + BODY + "," + BODY + "]]"),
+                JsonParser.parseString(CompressedPayload.expand(output)));
+    }
+
+    @Test
+    public void onlyTheExactEncodingFlagIsExpanded() {
+        String data = JsonParser.parseString(CompressedPayload.compress(BODY, 16)).getAsJsonObject().get("data").getAsString();
+        // Look like a compressed body, but are not one
+        String otherEncoding = "{\"encoding\":\"deflate\",\"data\":\"" + data + "\"}";
+        String moreFields = "{\"encoding\":\"gzip\",\"data\":\"" + data + "\",\"more\":1}";
+        String output = "[" + otherEncoding + "," + moreFields + "]";
+
+        assertEquals(JsonParser.parseString(output), JsonParser.parseString(CompressedPayload.expand(output)));
+    }
+
+    @Test
+    public void corruptDataIsRejected() {
+        String notGzip = Base64.getEncoder().encodeToString(BODY.getBytes(UTF_8));
+
+        assertThrows(UncheckedIOException.class,
+                () -> CompressedPayload.expand("[{\"encoding\":\"gzip\",\"data\":\"" + notGzip + "\"}]"));
+    }
+}
@@ -0,0 +1,111 @@
+package io.ulbrich;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PhaseMetricsTest {
+    private final ByteArrayOutputStream emf = new ByteArrayOutputStream();
+    private final PhaseMetrics metrics = new PhaseMetrics("Tests", "my-function", new PrintStream(emf, true, UTF_8));
+
+    @Test
+    public void writesOneEmfDocumentPerBranchAndOutcome() {
+        long fiveMillisAgo = System.nanoTime() - 5_000_000;
+        metrics.record("getPageContents", "Foo", PhaseMetrics.SUCCESS, fiveMillisAgo);
+        metrics.record("serialization", "Foo", PhaseMetrics.SUCCESS, fiveMillisAgo);
+        metrics.record("getPageContents", "Foo", PhaseMetrics.SUCCESS, fiveMillisAgo);
+        metrics.count("cache", "Foo", PhaseMetrics.SUCCESS);
+        metrics.record("getPageContents", "Bar", PhaseMetrics.FAILURE, fiveMillisAgo);
+        metrics.flush();
+
+        List<JsonObject> documents = documents();
+        assertEquals(2, documents.size());
+
+        JsonObject foo = documents.get(0);
+        JsonObject aws = foo.getAsJsonObject("_aws");
+        assertTrue(aws.get("Timestamp").getAsLong() > 0);
+        JsonObject directive = aws.getAsJsonArray("CloudWatchMetrics").get(0).getAsJsonObject();
+        assertEquals("Tests", directive.get("Namespace").getAsString());
+        assertEquals(JsonParser.parseString("[[\"Function\",\"Branch\",\"Outcome\"]]"), directive.get("Dimensions"));
+        assertEquals(JsonParser.parseString("[{\"Name\":\"getPageContents\",\"Unit\":\"Milliseconds\"},"
+                + "{\"Name\":\"serialization\",\"Unit\":\"Milliseconds\"},{\"Name\":\"cache\",\"Unit\":\"Count\"}]"), directive.get("Metrics"));
+        assertEquals("my-function", foo.get("Function").getAsString());
+        assertEquals("Foo", foo.get("Branch").getAsString());
+        assertEquals("Success", foo.get("Outcome").getAsString());
+        JsonArray fetches = foo.getAsJsonArray("getPageContents");
+        assertEquals(2, fetches.size());
+        assertTrue(fetches.get(0).getAsDouble() >= 5);
+        assertEquals(1, foo.getAsJsonArray("serialization").size());
+        assertEquals(JsonParser.parseString("[1]"), foo.get("cache"));
+
+        JsonObject bar = documents.get(1);
+        assertEquals("Bar", bar.get("Branch").getAsString());
+        assertEquals("Failure", bar.get("Outcome").getAsString());
+        assertEquals(1, bar.getAsJsonArray("getPageContents").size());
+    }
+
+    @Test
+    public void flushesEarlyWhenCapacityIsReached() {
+        for (int i = 0; i < 64; i++) {
+            metrics.count("cache", "Foo", PhaseMetrics.SUCCESS);
+        }
+        assertEquals(0, emf.size());
+
+        metrics.count("cache", "Foo", PhaseMetrics.SUCCESS);
+        List<JsonObject> documents = documents();
+        assertEquals(1, documents.size());
+        assertEquals(64, documents.get(0).getAsJsonArray("cache").size());
+
+        emf.reset();
+        metrics.flush();
+        assertEquals(1, documents().get(0).getAsJsonArray("cache").size());
+    }
+
+    @Test
+    public void discardedSamplesAreNotWritten() {
+        metrics.count("cache", "Foo", PhaseMetrics.SUCCESS);
+        metrics.discard();
+        metrics.flush();
+
+        assertEquals(0, emf.size());
+    }
+
+    @Test
+    public void disabledMetricsWriteNothing() {
+        PhaseMetrics disabled = PhaseMetrics.disabled();
+        for (int i = 0; i < 100; i++) {
+            disabled.record("getPageContents", "Foo", PhaseMetrics.SUCCESS, System.nanoTime());
+        }
+        disabled.flush();
+
+        assertEquals(0, emf.size());
+    }
+
+    @Test
+    public void escapesNames() {
+        metrics.count("quote\"backslash\\", "Foo", PhaseMetrics.SUCCESS);
+        metrics.flush();
+
+        assertEquals(JsonParser.parseString("[1]"), documents().get(0).get("quote\"backslash\\"));
+    }
+
+    private List<JsonObject> documents() {
+        List<JsonObject> documents = new ArrayList<>();
+        for (String line : emf.toString(UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                documents.add(JsonParser.parseString(line).getAsJsonObject());
+            }
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,307 @@
+package io.ulbrich;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class TtlCacheTest {
+    private static final Duration TTL = Duration.ofSeconds(10);
+    private static final Duration STALE_WINDOW = Duration.ofSeconds(60);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Queue<Runnable> refreshes = new ArrayDeque<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private volatile String body = "first";
+    private volatile int status = 200;
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            byte[] response = body.getBytes(UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.start();
+        url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void entriesExpireAfterTtl() throws IOException {
+        TtlCache<String, String> cache = cache(Duration.ZERO);
+
+        assertEquals("first", cache.get(url));
+        body = "second";
+        advance(TTL.minusSeconds(1));
+        assertEquals("first", cache.get(url));
+        assertEquals(1, requests.get());
+
+        advance(Duration.ofSeconds(1));
+        assertEquals("second", cache.get(url));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void staleEntriesAreServedWhileRefreshedAhead() throws IOException {
+        TtlCache<String, String> cache = cache(STALE_WINDOW);
+
+        cache.get(url);
+        body = "second";
+        advance(TTL.plusSeconds(1));
+        // Served without waiting, the refresh is left to the background
+        assertEquals("first", cache.get(url));
+        assertEquals(1, requests.get());
+        assertEquals(1, refreshes.size());
+
+        refreshes.poll().run();
+        assertEquals(2, requests.get());
+        assertEquals("second", cache.get(url));
+        assertEquals(0, refreshes.size());
+    }
+
+    @Test
+    public void staleEntryIsKeptWhenRefreshFails() throws IOException {
+        TtlCache<String, String> cache = cache(STALE_WINDOW);
+
+        cache.get(url);
+        status = 500;
+        advance(TTL.plusSeconds(1));
+        assertEquals("first", cache.get(url));
+        refreshes.poll().run();
+        assertEquals("first", cache.get(url));
+
+        // Beyond the stale window the failure reaches the caller, and it is not cached
+        advance(STALE_WINDOW);
+        assertThrows(IOException.class, () -> cache.get(url));
+        status = 200;
+        body = "second";
+        assertEquals("second", cache.get(url));
+    }
+
+    @Test
+    public void backgroundRefreshUsesTheLoaderOfTheCache() throws IOException {
+        TtlCache<String, String> cache = cache(STALE_WINDOW);
+        TtlCache.Loader<String, String> invocationLoader = key -> "from invocation";
+
+        assertEquals("from invocation", cache.get(url, invocationLoader));
+        body = "second";
+        advance(TTL.plusSeconds(1));
+        assertEquals("from invocation", cache.get(url, invocationLoader));
+
+        // The refresh outlives the invocation, it must not use its loader
+        refreshes.poll().run();
+        assertEquals(1, requests.get());
+        assertEquals("second", cache.get(url, invocationLoader));
+    }
+
+    @Test
+    public void missesAreNotCachedWhenNotCacheable() throws IOException {
+        TtlCache<String, String> cache = TtlCache.<String, String>builder(this::fetch)
+                .ttl(TTL)
+                .cacheable(value -> !value.isEmpty())
+                .nanoClock(nanos::get)
+                .refreshExecutor(refreshes::add)
+                .build();
+        body = "";
+
+        assertEquals("", cache.get(url));
+        assertEquals("", cache.get(url));
+        assertEquals(2, requests.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        List<TtlCache.Outcome> outcomes = new CopyOnWriteArrayList<>();
+        TtlCache<String, String> cache = TtlCache.<String, String>builder()
+                .ttl(TTL)
+                .listener(outcomes::add)
+                .build();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        TtlCache.Loader<String, String> loader = key -> {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> cache.get("key", loader, Duration.ofSeconds(10))));
+            }
+            awaitCondition(() -> outcomes.size() == 8);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("value", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, Collections.frequency(outcomes, TtlCache.Outcome.MISS));
+        assertEquals(7, Collections.frequency(outcomes, TtlCache.Outcome.COALESCED));
+        assertEquals("value", cache.get("key", key -> "other"));
+    }
+
+    @Test
+    public void waiterGivesUpAfterItsOwnMaxWait() throws Exception {
+        TtlCache<String, String> cache = TtlCache.<String, String>builder().ttl(TTL).build();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        try {
+            // The first caller has plenty of time left
+            Future<String> loaded = first.submit(() -> cache.get("key", key -> {
+                loading.countDown();
+                await(release);
+                return "value";
+            }, Duration.ofSeconds(10)));
+            await(loading);
+
+            long start = System.nanoTime();
+            assertThrows(IOException.class, () -> cache.get("key", key -> "not loaded", Duration.ofMillis(100)));
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Waited " + waitedMillis + " ms", waitedMillis >= 100 && waitedMillis < 1_000);
+            // Without any time left the waiter does not wait at all
+            assertThrows(IOException.class, () -> cache.get("key", key -> "not loaded", Duration.ofMillis(-1)));
+
+            release.countDown();
+            assertEquals("value", loaded.get(10, TimeUnit.SECONDS));
+        } finally {
+            first.shutdownNow();
+        }
+        assertEquals("value", cache.get("key", key -> "not loaded", Duration.ZERO));
+    }
+
+    @Test
+    public void waitersShareAFailedLoadWithoutCachingIt() throws Exception {
+        List<TtlCache.Outcome> outcomes = new CopyOnWriteArrayList<>();
+        TtlCache<String, String> cache = TtlCache.<String, String>builder().ttl(TTL).listener(outcomes::add).build();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> failed = first.submit(() -> cache.get("key", key -> {
+                loading.countDown();
+                await(release);
+                throw new IOException("upstream down");
+            }, Duration.ofSeconds(10)));
+            await(loading);
+
+            ExecutorService second = Executors.newSingleThreadExecutor();
+            try {
+                Future<String> coalesced = second.submit(() -> cache.get("key", key -> "not loaded", Duration.ofSeconds(10)));
+                awaitCondition(() -> outcomes.contains(TtlCache.Outcome.COALESCED));
+                release.countDown();
+
+                assertEquals("upstream down", causeOf(failed).getMessage());
+                assertEquals("upstream down", causeOf(coalesced).getMessage());
+            } finally {
+                second.shutdownNow();
+            }
+        } finally {
+            first.shutdownNow();
+        }
+        assertEquals("value", cache.get("key", key -> "value"));
+    }
+
+    private static Throwable causeOf(Future<?> future) throws Exception {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IOException("Not released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private TtlCache<String, String> cache(Duration staleWindow) {
+        return TtlCache.<String, String>builder(this::fetch)
+                .ttl(TTL)
+                .staleWindow(staleWindow)
+                .nanoClock(nanos::get)
+                .refreshExecutor(refreshes::add)
+                .build();
+    }
+
+    private String fetch(String address) throws IOException {
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(address)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("Upstream answered " + response.statusCode());
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
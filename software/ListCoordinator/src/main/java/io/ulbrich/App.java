@@ -1,22 +1,31 @@
 package io.ulbrich;
 
 import com.amazonaws.services.lambda.runtime.Context;
-import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import software.amazon.awssdk.services.sfn.SfnClient;
-import software.amazon.awssdk.services.sfn.model.StartSyncExecutionRequest;
-import software.amazon.awssdk.services.sfn.model.StartSyncExecutionResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.crac.Core;
+import org.crac.Resource;
 import software.amazon.lambda.powertools.metrics.Metrics;
 import software.amazon.lambda.powertools.tracing.Tracing;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static software.amazon.lambda.powertools.tracing.CaptureMode.DISABLED;
 
 /**
@@ -39,6 +48,8 @@ import static software.amazon.lambda.powertools.tracing.CaptureMode.DISABLED;
  * <ul>
  *   <li>requires CDK integration setting requestContext with userArn + accountId to generate respective mapping template (StepFunctionsExecutionIntegrationOptions)</li>
  *   <li>identify caller: requestContext={accountId=some-account, userArn=arn:aws:iam::some-account:user/some-user}</li>
+ *   <li>MyTestApi maps only the id and the caller by default, into the compact {@link ListInput} shape this handler
+ *   forwards as well: {id=1234, accountId=some-account, userArn=arn:aws:iam::some-account:user/some-user}</li>
  *   <ul><li>available manually in RequestHandler&lt;Map&lt;String, Object&gt, APIGatewayProxyResponseEvent&gt; event</li></ul>
  *   <li>Note: it would also be possible to get the attribute in "identity" similar to the lambda integration. But CDK decided to drop the identity envelope</li>
  * </ul>
@@ -59,51 +70,351 @@ import static software.amazon.lambda.powertools.tracing.CaptureMode.DISABLED;
  *  <li>$context.identity.accountId</li>
  *  <li>$context.identity.userArn</li>
  * </ul>
+ * SnapStart
+ * <p>
+ * Before the checkpoint the coordinator is {@link Coordinator#prime() primed} and the handler is run against the
+ * {@code priming/} fixtures with a canned coordinator result, so the snapshot contains loaded and compiled request
+ * handling, logging and serialization. Priming requests are not reported as metrics and never sampled. The SDK
+ * clients are primed by {@link AwsClients}. After the restore the clients and the payload sampling random are replaced.
+ * <p>
+ * Response cache
+ * <p>
+ * If {@code RESPONSE_CACHE_TTL_SECONDS} is set (unset or 0: disabled), successful coordinations of
+ * {@code GET /lambda/{id}} are cached per path id and caller account for that long, at most
+ * {@code RESPONSE_CACHE_MAX_ENTRIES} (default 1024). Expired responses are never served, there is no stale window.
+ * Identical requests arriving while one is coordinated wait for its result, bounded by their own remaining time,
+ * instead of starting their own execution. Hits, misses and coalesced requests are counted as {@code responseCache}
+ * metric.
+ * <p>
+ * Branch outputs
+ * <p>
+ * Depending on the deployment, the coordinator output holds the complete {@code LambdaInvoke} result or only the body
+ * of every branch. Compressed bodies are {@link CompressedPayload#expand(String) expanded} before they are returned.
+ * <p>
+ * Batches
+ * <p>
+ * {@code POST /lambda/batch} with a body like {@code {"ids": ["1", "2"]}} resolves up to {@code BATCH_MAX_IDS}
+ * (default 100) ids with the batch coordinator in one invocation. The response lists the ids and, as output, one
+ * {@code Fetch All} result per id in the same order.
+ * <p>
+ * Asynchronous executions
+ * <p>
+ * If the async state machine is deployed, {@code POST /lambda/{id}/executions} starts an execution without waiting for
+ * it and answers 202 with a token. {@code GET /lambda/executions/{token}} returns the status and, once completed,
+ * the output. Results are kept for {@code ASYNC_RESULT_TTL_SECONDS} and only returned to the account that started
+ * the execution.
  */
-public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+    private static final Logger LOG = LogManager.getLogger(App.class);
+    // Enough to get the request path compiled by C1
+    private static final int PRIMING_INVOCATIONS = 1_000;
+    // Time kept back to answer when waiting for a coalesced request, like the coordinators keep it for theirs
+    private static final long RESPONSE_RESERVE_MILLIS = 500;
+
+    private static final String BATCH_RESOURCE = "/lambda/batch";
+    private static final String START_RESOURCE = "/lambda/{id}/executions";
+    private static final String STATUS_RESOURCE = "/lambda/executions/{token}";
+    private static final int DEFAULT_MAX_BATCH_IDS = 100;
+    private static final int DEFAULT_RESPONSE_CACHE_MAX_ENTRIES = 1024;
+    private static final Map<TtlCache.Outcome, String> CACHE_OUTCOMES = new EnumMap<>(Map.of(
+            TtlCache.Outcome.HIT, "Hit",
+            TtlCache.Outcome.MISS, "Miss",
+            TtlCache.Outcome.COALESCED, "Coalesced"));
 
-    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Coordinator coordinator;
+    private final Coordinator batchCoordinator;
+    private final AsyncCoordinator asyncCoordinator;
+    private final int maxBatchIds;
+    private final TtlCache<CacheKey, Coordinator.Result> responseCache;
+    private final ResponseWriter responseWriter;
+    private final PhaseMetrics metrics;
+    private final PayloadSampler payloadSampler;
+
+    public App() {
+        this(Coordinator.fromEnvironment(), Coordinator.batchFromEnvironment(), AsyncCoordinator.fromEnvironment(),
+                ResponseWriter.fromEnvironment(), PhaseMetrics.instance(), PayloadSampler.fromEnvironment());
+    }
+
+    /**
+     * Batches are resolved in-process with {@code coordinator}.
+     */
+    public App(Coordinator coordinator) {
+        this(coordinator, new BatchCoordinator(coordinator, Coordinator.batchConcurrency()));
+    }
+
+    public App(Coordinator coordinator, Coordinator batchCoordinator) {
+        this(coordinator, batchCoordinator, null);
+    }
+
+    /**
+     * @param asyncCoordinator {@code null} disables asynchronous executions
+     */
+    public App(Coordinator coordinator, Coordinator batchCoordinator, AsyncCoordinator asyncCoordinator) {
+        this(coordinator, batchCoordinator, asyncCoordinator, ResponseWriter.fromEnvironment(), PhaseMetrics.instance(),
+                PayloadSampler.fromEnvironment());
+    }
+
+    App(Coordinator coordinator, Coordinator batchCoordinator, AsyncCoordinator asyncCoordinator, ResponseWriter responseWriter,
+        PhaseMetrics metrics, PayloadSampler payloadSampler) {
+        this.coordinator = coordinator;
+        this.batchCoordinator = batchCoordinator;
+        this.asyncCoordinator = asyncCoordinator;
+        String maxBatchIds = System.getenv("BATCH_MAX_IDS");
+        this.maxBatchIds = maxBatchIds == null ? DEFAULT_MAX_BATCH_IDS : Integer.parseInt(maxBatchIds);
+        this.responseCache = responseCache(metrics);
+        this.responseWriter = responseWriter;
+        this.metrics = metrics;
+        this.payloadSampler = payloadSampler;
+        Core.getGlobalContext().register(this);
+    }
+
+    /**
+     * Copy for priming, it records no metrics, never samples and has a response cache of its own.
+     */
+    private App(App app) {
+        this.coordinator = app.coordinator;
+        this.batchCoordinator = app.batchCoordinator;
+        this.asyncCoordinator = app.asyncCoordinator;
+        this.maxBatchIds = app.maxBatchIds;
+        this.responseCache = responseCache(PhaseMetrics.disabled());
+        this.responseWriter = app.responseWriter;
+        this.metrics = PhaseMetrics.disabled();
+        this.payloadSampler = new PayloadSampler(0);
+    }
 
     @Tracing(captureMode = DISABLED)
     @Metrics(captureColdStart = true)
     public APIGatewayProxyResponseEvent handleRequest(final APIGatewayProxyRequestEvent input, final Context context) {
-        LambdaLogger logger = context.getLogger();
+        try {
+            if (BATCH_RESOURCE.equals(input.getResource()) && "POST".equals(input.getHttpMethod())) {
+                return handleBatch(input, context, batchCoordinator);
+            }
+            if (asyncCoordinator != null && START_RESOURCE.equals(input.getResource()) && "POST".equals(input.getHttpMethod())) {
+                return handleStart(input, context);
+            }
+            if (asyncCoordinator != null && STATUS_RESOURCE.equals(input.getResource()) && "GET".equals(input.getHttpMethod())) {
+                return handleStatus(input, context);
+            }
+            return handle(input, context, coordinator);
+        } finally {
+            metrics.flush();
+        }
+    }
+
+    /**
+     * Runs the request path without the powertools aspects, they expect a real invocation. The priming requests are
+     * neither recorded as metrics nor sampled, they run on a {@link #App(App) copy} of the handler.
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws IOException {
+        APIGatewayProxyRequestEvent input;
+        String output;
+        try (InputStream event = open("/priming/lambda_proxy_input.json");
+             InputStream stateMachineOutput = open("/priming/state_machine_output.json")) {
+            input = new Gson().fromJson(new InputStreamReader(event, UTF_8), APIGatewayProxyRequestEvent.class);
+            output = new String(stateMachineOutput.readAllBytes(), UTF_8);
+        }
+        Coordinator.Result result = Coordinator.Result.succeeded(output);
+        APIGatewayProxyRequestEvent batchInput = input.clone()
+                .withResource(BATCH_RESOURCE)
+                .withHttpMethod("POST")
+                .withBody("{\"ids\":[\"1\",\"2\"]}");
+        Coordinator.Result batchResult = Coordinator.Result.succeeded("[" + output + "," + output + "]");
+        App priming = new App(this);
+        for (int i = 0; i < PRIMING_INVOCATIONS; i++) {
+            coordinator.prime();
+            priming.handle(input, PrimingContext.INSTANCE, (in, ctx) -> result);
+            priming.handleBatch(batchInput, PrimingContext.INSTANCE, (in, ctx) -> batchResult);
+            responseWriter.write("priming", new ResultStore.Entry(ResultStore.Status.SUCCEEDED, "priming", output, 0));
+        }
+        batchCoordinator.prime();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        invalidateResponseCache();
+        AwsClients.refresh();
+        payloadSampler.reseed();
+    }
 
+    private static TtlCache<CacheKey, Coordinator.Result> responseCache(PhaseMetrics metrics) {
+        return responseCache(metrics, System::getenv);
+    }
+
+    static TtlCache<CacheKey, Coordinator.Result> responseCache(PhaseMetrics metrics, UnaryOperator<String> environment) {
+        String ttl = environment.apply("RESPONSE_CACHE_TTL_SECONDS");
+        if (ttl == null || Long.parseLong(ttl) == 0) {
+            return null;
+        }
+        return TtlCache.<CacheKey, Coordinator.Result>builder()
+                .maxEntries(DEFAULT_RESPONSE_CACHE_MAX_ENTRIES)
+                .cacheable(Coordinator.Result::isSucceeded)
+                .listener(outcome -> metrics.count("responseCache", PhaseMetrics.ALL_BRANCHES, CACHE_OUTCOMES.get(outcome)))
+                .fromEnvironment("RESPONSE_CACHE", environment)
+                // After the environment, RESPONSE_CACHE_STALE_SECONDS must not re-enable it: a stale response would be
+                // served to the caller, unlike a stale upstream page in the list providers
+                .staleWindow(Duration.ZERO)
+                .build();
+    }
+
+    private void invalidateResponseCache() {
+        if (responseCache != null) {
+            responseCache.invalidateAll();
+        }
+    }
+
+    private static InputStream open(String resource) throws IOException {
+        InputStream input = App.class.getResourceAsStream(resource);
+        if (input == null) {
+            throw new IOException("Missing priming fixture " + resource);
+        }
+        return input;
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent input, Context context, Coordinator coordinator) {
+        ThreadContext.put("AWSRequestId", context.getAwsRequestId());
+        APIGatewayProxyRequestEvent.RequestIdentity identity = input.getRequestContext().getIdentity();
+        String accountId = identity.getAccountId();
+        String id = input.getPathParameters() != null ? input.getPathParameters().get("id") : null;
+        String listInput = ListInput.of(id, accountId, identity.getUserArn());
+        Coordinator.Result result;
+        if (responseCache == null) {
+            result = coordinator.coordinate(listInput, context);
+        } else {
+            try {
+                // The coordination runs with the deadline of the first caller, every other one waits only for as long
+                // as its own invocation allows
+                result = responseCache.get(new CacheKey(id, accountId), key -> coordinator.coordinate(listInput, context),
+                        Duration.ofMillis(context.getRemainingTimeInMillis() - RESPONSE_RESERVE_MILLIS));
+            } catch (IOException e) {
+                // Only thrown when waiting for a coalesced request timed out or was interrupted
+                result = Coordinator.Result.failed("TIMED_OUT", e.getMessage());
+            }
+        }
+        return respond(result, accountId, null);
+    }
+
+    private APIGatewayProxyResponseEvent handleBatch(APIGatewayProxyRequestEvent input, Context context, Coordinator coordinator) {
+        ThreadContext.put("AWSRequestId", context.getAwsRequestId());
+        APIGatewayProxyRequestEvent.RequestIdentity identity = input.getRequestContext().getIdentity();
+        BatchRequest request;
+        try {
+            request = BatchRequest.fromBody(input.getBody(), maxBatchIds, identity.getAccountId(), identity.getUserArn());
+        } catch (IllegalArgumentException e) {
+            LOG.info("Rejected batch: {}", e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                    .withHeaders(headers())
+                    .withStatusCode(400)
+                    .withBody("{}");
+        }
+        Coordinator.Result result = coordinator.coordinate(request.toInput(), context);
+        return respond(result, request.getAccountId(), request.getIds());
+    }
+
+    private APIGatewayProxyResponseEvent handleStart(APIGatewayProxyRequestEvent input, Context context) {
+        ThreadContext.put("AWSRequestId", context.getAwsRequestId());
+        APIGatewayProxyRequestEvent.RequestIdentity identity = input.getRequestContext().getIdentity();
+        String token = asyncCoordinator.start(input.getPathParameters().get("id"), identity.getAccountId(), identity.getUserArn());
+        LOG.debug("Started execution {}", token);
+        return new APIGatewayProxyResponseEvent()
+                .withHeaders(headers())
+                .withStatusCode(202)
+                .withBody(responseWriter.write(token,
+                        new ResultStore.Entry(ResultStore.Status.RUNNING, identity.getAccountId(), null, 0)));
+    }
+
+    private APIGatewayProxyResponseEvent handleStatus(APIGatewayProxyRequestEvent input, Context context) {
+        ThreadContext.put("AWSRequestId", context.getAwsRequestId());
+        String token = input.getPathParameters().get("token");
+        Optional<ResultStore.Entry> execution = asyncCoordinator.get(token, input.getRequestContext().getIdentity().getAccountId());
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent()
+                .withHeaders(headers());
+        if (execution.isEmpty()) {
+            return response
+                    .withStatusCode(404)
+                    .withBody("{}");
+        }
+        if (execution.get().getStatus() == ResultStore.Status.FAILED) {
+            LOG.warn("Execution {} failed: {}", token, execution.get().getOutput());
+        }
+        ResultStore.Entry entry = execution.get();
+        return response
+                .withStatusCode(200)
+                .withBody(responseWriter.write(token, new ResultStore.Entry(entry.getStatus(), entry.getAccountId(),
+                        CompressedPayload.expand(entry.getOutput()), entry.getExpiresAt())));
+    }
+
+    private APIGatewayProxyResponseEvent respond(Coordinator.Result result, String accountId, List<String> ids) {
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent()
+                .withHeaders(headers());
+        if (result.isSucceeded()) {
+            if (payloadSampler.sample()) {
+                LOG.info("Sampled coordination {}: {}", result.getStatus(), result.getOutput());
+            } else {
+                LOG.debug("Coordination {}", result.getStatus());
+            }
+            long start = System.nanoTime();
+            String body = responseWriter.write(new Response(accountId, ids, CompressedPayload.expand(result.getOutput())));
+            metrics.record("serialization", PhaseMetrics.ALL_BRANCHES, PhaseMetrics.SUCCESS, start);
+            return response
+                    .withStatusCode(200)
+                    .withBody(body);
+        }
+        LOG.error("Coordination {}: {}", result.getStatus(), result.getOutput());
+        return response
+                .withStatusCode(500)
+                .withBody("{}");
+    }
+
+    private static Map<String, String> headers() {
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
         headers.put("X-Custom-Header", "application/json");
+        return headers;
+    }
+
+    static final class CacheKey {
+        private final String id;
+        private final String accountId;
 
+        CacheKey(String id, String accountId) {
+            this.id = id;
+            this.accountId = accountId;
+        }
 
-        try (SfnClient sfnClient = SfnClient.create()) {
-            StartSyncExecutionRequest executionRequest = StartSyncExecutionRequest.builder()
-                    .input("{}")
-                    .stateMachineArn(System.getenv("SM_LIST_ARN"))
-                    .name(UUID.randomUUID().toString())
-                    .build();
-            StartSyncExecutionResponse result = sfnClient.startSyncExecution(executionRequest);
-            logger.log(result.status().toString());
-            APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent()
-                    .withHeaders(headers);
-            switch (result.status()) {
-                case SUCCEEDED:
-                    return response
-                            .withStatusCode(200)
-                            .withBody(gson.toJson(new Response(input.getRequestContext().getIdentity().getAccountId(), result.output())));
-                default:
-                    logger.log(result.output());
-                    return response
-                            .withStatusCode(500)
-                            .withBody("{}");
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
             }
+            CacheKey other = (CacheKey) o;
+            return Objects.equals(id, other.id) && Objects.equals(accountId, other.accountId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, accountId);
         }
     }
 
     static class Response {
         private final String accountId;
+        private final List<String> ids;
         private final String output;
 
         public Response(String accountId, String output) {
+            this(accountId, null, output);
+        }
+
+        /**
+         * @param ids the ids of a batch, {@code null} for a single request
+         */
+        public Response(String accountId, List<String> ids, String output) {
             this.accountId = accountId;
+            this.ids = ids;
             this.output = output;
         }
 
@@ -111,6 +422,10 @@ public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatew
             return accountId;
         }
 
+        public List<String> getIds() {
+            return ids;
+        }
+
         public String getOutput() {
             return output;
         }
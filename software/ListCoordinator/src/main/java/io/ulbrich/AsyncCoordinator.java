@@ -0,0 +1,121 @@
+package io.ulbrich;
+
+import com.google.gson.stream.JsonWriter;
+import software.amazon.awssdk.services.sfn.SfnClient;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Starts executions of the async state machine without waiting for them and looks up their results.
+ * <p>
+ * The coordinator returns as soon as the execution is started, so its concurrency no longer depends on the latency of
+ * the slowest branch. The state machine can be standard or express, both are started with {@code StartExecution}.
+ * Its input is the {@link ListInput} of the id plus the {@code token} and {@code expiresAt} (epoch seconds, as string)
+ * of the {@link ResultStore} entry the state machine writes its result to.
+ * <p>
+ * The {@link ResultStore.Status#RUNNING RUNNING} entry is written before the execution is started, so the result
+ * written by the state machine cannot be overwritten by it. If the start fails, the entry is replaced by a
+ * {@link ResultStore.Status#FAILED FAILED} one. The state machine stores failed and timed out branches as
+ * {@code FAILED} as well, only executions that are stopped from outside, or fail to store their result, stay
+ * {@code RUNNING} until the entry expires.
+ * <p>
+ * Configured with {@code ASYNC_SM_ARN}, {@code RESULT_TABLE} and {@code ASYNC_RESULT_TTL_SECONDS} (default 900) when
+ * created with {@link #fromEnvironment()}.
+ */
+public class AsyncCoordinator {
+    private static final long DEFAULT_RESULT_TTL_SECONDS = 900;
+
+    private final Supplier<SfnClient> sfnClient;
+    private final String stateMachineArn;
+    private final ResultStore resultStore;
+    private final Duration resultTtl;
+    private final PhaseMetrics metrics;
+
+    /**
+     * @param sfnClient looked up for every request, so a client replaced after a SnapStart restore is picked up
+     */
+    public AsyncCoordinator(Supplier<SfnClient> sfnClient, String stateMachineArn, ResultStore resultStore, Duration resultTtl,
+                            PhaseMetrics metrics) {
+        this.sfnClient = sfnClient;
+        this.stateMachineArn = stateMachineArn;
+        this.resultStore = resultStore;
+        this.resultTtl = resultTtl;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the coordinator, {@code null} if the async state machine is not deployed
+     */
+    static AsyncCoordinator fromEnvironment() {
+        String stateMachineArn = System.getenv("ASYNC_SM_ARN");
+        if (stateMachineArn == null) {
+            return null;
+        }
+        String ttl = System.getenv("ASYNC_RESULT_TTL_SECONDS");
+        AwsClients.dynamoDb();
+        return new AsyncCoordinator(AwsClients::sfn, stateMachineArn,
+                new DynamoDbResultStore(AwsClients::dynamoDb, System.getenv("RESULT_TABLE")),
+                Duration.ofSeconds(ttl == null ? DEFAULT_RESULT_TTL_SECONDS : Long.parseLong(ttl)),
+                PhaseMetrics.instance());
+    }
+
+    /**
+     * @return the token to look the result up with
+     */
+    public String start(String id, String accountId, String userArn) {
+        String token = UUID.randomUUID().toString();
+        long expiresAt = System.currentTimeMillis() / 1000 + resultTtl.toSeconds();
+        resultStore.put(token, new ResultStore.Entry(ResultStore.Status.RUNNING, accountId, null, expiresAt));
+
+        String input = input(token, expiresAt, id, accountId, userArn);
+        boolean started = false;
+        long start = System.nanoTime();
+        try {
+            // The token doubles as execution name, so the execution can be found by token
+            sfnClient.get().startExecution(r -> r
+                    .stateMachineArn(stateMachineArn)
+                    .name(token)
+                    .input(input));
+            started = true;
+        } catch (RuntimeException e) {
+            // Nothing would ever complete the RUNNING entry
+            resultStore.put(token, new ResultStore.Entry(ResultStore.Status.FAILED, accountId,
+                    "Could not start the execution: " + e.getMessage(), expiresAt));
+            throw e;
+        } finally {
+            metrics.record("startExecution", PhaseMetrics.ALL_BRANCHES, started ? PhaseMetrics.SUCCESS : PhaseMetrics.FAILURE, start);
+        }
+        return token;
+    }
+
+    /**
+     * @return the execution, empty if the token is unknown, expired or was started by another account
+     */
+    public Optional<ResultStore.Entry> get(String token, String accountId) {
+        return resultStore.get(token)
+                .filter(entry -> accountId != null && accountId.equals(entry.getAccountId()));
+    }
+
+    private static String input(String token, long expiresAt, String id, String accountId, String userArn) {
+        StringWriter buffer = new StringWriter(256);
+        try {
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.beginObject();
+            writer.name("token").value(token);
+            writer.name("expiresAt").value(Long.toString(expiresAt));
+            ListInput.writeFields(writer, id, accountId, userArn);
+            writer.endObject();
+            writer.flush();
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,138 @@
+package io.ulbrich;
+
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ContainerCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.providers.DefaultAwsRegionProviderChain;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.sfn.SfnClient;
+
+import java.time.Duration;
+
+/**
+ * Provides the SDK clients shared by all invocations of an execution environment.
+ * <p>
+ * Clients are built once during the init phase with an explicitly configured HTTP client, region and credentials
+ * provider, so neither HTTP client discovery nor the default provider chains run on the request path.
+ * The {@link SfnClient} is primed with a cheap {@code DescribeStateMachine} call, which means a SnapStart snapshot
+ * contains a client whose marshallers, signers and TLS stack are already loaded.
+ * After a restore, {@link #refresh()} replaces the clients: their connections did not survive the snapshot and cached
+ * credentials must not be shared between the restored environments.
+ */
+final class AwsClients {
+    // startSyncExecution blocks until the express workflow finished, so the socket timeout covers the function timeout
+    private static final Duration SOCKET_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration CONNECTION_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration CONNECTION_MAX_IDLE_TIME = Duration.ofSeconds(50);
+    private static final int MAX_CONNECTIONS = 16;
+
+    private AwsClients() {
+    }
+
+    private static SfnClient sfn;
+    private static LambdaClient lambda;
+    private static DynamoDbClient dynamoDb;
+
+    static synchronized SfnClient sfn() {
+        if (sfn == null) {
+            sfn = prime(createSfn(), System.getenv("SM_LIST_ARN"));
+        }
+        return sfn;
+    }
+
+    static synchronized LambdaClient lambda() {
+        if (lambda == null) {
+            lambda = createLambda();
+        }
+        return lambda;
+    }
+
+    static synchronized DynamoDbClient dynamoDb() {
+        if (dynamoDb == null) {
+            dynamoDb = createDynamoDb();
+        }
+        return dynamoDb;
+    }
+
+    /**
+     * Replaces the clients created so far, the replacements are not primed again.
+     */
+    static synchronized void refresh() {
+        if (sfn != null) {
+            sfn.close();
+            sfn = createSfn();
+        }
+        if (lambda != null) {
+            lambda.close();
+            lambda = createLambda();
+        }
+        if (dynamoDb != null) {
+            dynamoDb.close();
+            dynamoDb = createDynamoDb();
+        }
+    }
+
+    static SfnClient createSfn() {
+        return SfnClient.builder()
+                .region(region())
+                .credentialsProvider(credentialsProvider())
+                .httpClientBuilder(httpClientBuilder())
+                .build();
+    }
+
+    static LambdaClient createLambda() {
+        return LambdaClient.builder()
+                .region(region())
+                .credentialsProvider(credentialsProvider())
+                .httpClientBuilder(httpClientBuilder())
+                .build();
+    }
+
+    static DynamoDbClient createDynamoDb() {
+        return DynamoDbClient.builder()
+                .region(region())
+                .credentialsProvider(credentialsProvider())
+                .httpClientBuilder(httpClientBuilder())
+                .build();
+    }
+
+    static SfnClient prime(SfnClient client, String stateMachineArn) {
+        if (stateMachineArn == null) {
+            return client;
+        }
+        try {
+            client.describeStateMachine(r -> r.stateMachineArn(stateMachineArn));
+        } catch (SdkException e) {
+            // Priming is best effort, the first request pays for whatever could not be loaded here
+        }
+        return client;
+    }
+
+    private static ApacheHttpClient.Builder httpClientBuilder() {
+        return ApacheHttpClient.builder()
+                .maxConnections(MAX_CONNECTIONS)
+                .connectionTimeout(CONNECTION_TIMEOUT)
+                .socketTimeout(SOCKET_TIMEOUT)
+                .connectionMaxIdleTime(CONNECTION_MAX_IDLE_TIME)
+                .tcpKeepAlive(true)
+                // The environment is frozen between invocations, a reaper thread would only add wake-ups
+                .useIdleConnectionReaper(false);
+    }
+
+    private static Region region() {
+        String region = System.getenv("AWS_REGION");
+        return region != null ? Region.of(region) : new DefaultAwsRegionProviderChain().getRegion();
+    }
+
+    private static AwsCredentialsProvider credentialsProvider() {
+        // SnapStart functions receive their credentials from the container endpoint instead of environment variables
+        if (System.getenv("AWS_CONTAINER_CREDENTIALS_FULL_URI") != null) {
+            return ContainerCredentialsProvider.builder().build();
+        }
+        return EnvironmentVariableCredentialsProvider.create();
+    }
+}
@@ -0,0 +1,109 @@
+package io.ulbrich;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves the ids of a {@link BatchRequest} by running a single-id coordinator for each of them, at most
+ * {@code concurrency} at a time.
+ * <p>
+ * The merged output has the same shape as the output of the {@code Fetch Each} Map state: one {@code Fetch All}
+ * result per id, in request order. An id listed more than once is resolved once and its result repeated at every
+ * position, like {@link InProcessCoordinator} does for functions. The batch fails as a whole if one of the ids fails or the deadline derived from
+ * {@link Context#getRemainingTimeInMillis()} passes.
+ */
+public class BatchCoordinator implements Coordinator {
+    // Time kept back to build and return the response after all ids completed
+    private static final long RESPONSE_RESERVE_MILLIS = 500;
+
+    private final Coordinator coordinator;
+    private final int concurrency;
+    private final ExecutorService executor;
+
+    /**
+     * @param coordinator resolves a single id, it has to be thread safe
+     */
+    public BatchCoordinator(Coordinator coordinator, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+        }
+        this.coordinator = coordinator;
+        this.concurrency = concurrency;
+        this.executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "batch-item");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Result coordinate(String input, Context context) {
+        long deadlineMillis = context.getRemainingTimeInMillis() - RESPONSE_RESERVE_MILLIS;
+        if (deadlineMillis <= 0) {
+            return Result.failed("TIMED_OUT", "No time left to resolve the batch");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+
+        BatchRequest request = BatchRequest.fromInput(input);
+        List<String> ids = request.getIds();
+        List<String> distinctIds = List.copyOf(new LinkedHashSet<>(ids));
+        List<CompletableFuture<Result>> items = new ArrayList<>(distinctIds.size());
+        for (String id : distinctIds) {
+            String itemInput = request.itemInput(id);
+            items.add(CompletableFuture.supplyAsync(() -> coordinator.coordinate(itemInput, context), executor));
+        }
+
+        Map<String, String> outputs = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Result result;
+            try {
+                result = items.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                items.forEach(item -> item.cancel(true));
+                return Result.failed("TIMED_OUT", "Id " + distinctIds.get(i) + " did not complete in time");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.failed("ABORTED", "Interrupted while waiting for id " + distinctIds.get(i));
+            } catch (ExecutionException e) {
+                items.forEach(item -> item.cancel(true));
+                return Result.failed("FAILED", "Id " + distinctIds.get(i) + " failed: " + e.getCause().getMessage());
+            }
+            if (!result.isSucceeded()) {
+                items.forEach(item -> item.cancel(true));
+                return Result.failed(result.getStatus(), "Id " + distinctIds.get(i) + ": " + result.getOutput());
+            }
+            outputs.put(distinctIds.get(i), result.getOutput());
+        }
+
+        StringBuilder output = new StringBuilder(256 * ids.size()).append('[');
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                output.append(',');
+            }
+            output.append(outputs.get(ids.get(i)));
+        }
+        return Result.succeeded(output.append(']').toString());
+    }
+
+    @Override
+    public void prime() {
+        coordinator.prime();
+        // Starts the item threads
+        List<CompletableFuture<Void>> items = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            items.add(CompletableFuture.runAsync(() -> BatchRequest.fromInput("{}"), executor));
+        }
+        items.forEach(CompletableFuture::join);
+    }
+}
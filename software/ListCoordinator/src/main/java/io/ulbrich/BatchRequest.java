@@ -0,0 +1,150 @@
+package io.ulbrich;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ids of a {@code POST /lambda/batch} request together with the caller identity.
+ * <p>
+ * The request body is {@code {"ids": ["1", "2"]}}. The coordinator input built from it,
+ * {@code {"ids": [...], "accountId": ..., "userArn": ...}}, is consumed by the {@code Fetch Each} Map state, which
+ * hands every branch the {@link ListInput} of its id.
+ */
+class BatchRequest {
+    private final List<String> ids;
+    private final String accountId;
+    private final String userArn;
+
+    BatchRequest(List<String> ids, String accountId, String userArn) {
+        this.ids = Collections.unmodifiableList(ids);
+        this.accountId = accountId;
+        this.userArn = userArn;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the body is not valid or contains no or more than {@code maxIds} ids
+     */
+    static BatchRequest fromBody(String body, int maxIds, String accountId, String userArn) {
+        List<String> ids = null;
+        try {
+            JsonReader reader = new JsonReader(new StringReader(body == null ? "" : body));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("ids".equals(reader.nextName())) {
+                    ids = readIds(reader, maxIds);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new IllegalStateException("Content after the batch");
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Expected a body like {\"ids\": [\"1\", \"2\"]}", e);
+        }
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("No ids given");
+        }
+        return new BatchRequest(ids, accountId, userArn);
+    }
+
+    /**
+     * Reads the coordinator input written by {@link #toInput()}.
+     */
+    static BatchRequest fromInput(String input) {
+        List<String> ids = new ArrayList<>();
+        String accountId = null;
+        String userArn = null;
+        try {
+            JsonReader reader = new JsonReader(new StringReader(input));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("ids".equals(name)) {
+                    ids = readIds(reader, Integer.MAX_VALUE);
+                } else if ("accountId".equals(name)) {
+                    accountId = nextStringOrNull(reader);
+                } else if ("userArn".equals(name)) {
+                    userArn = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Not a batch input: " + input, e);
+        }
+        return new BatchRequest(ids, accountId, userArn);
+    }
+
+    private static List<String> readIds(JsonReader reader, int maxIds) throws IOException {
+        List<String> ids = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (ids.size() == maxIds) {
+                throw new IllegalArgumentException("At most " + maxIds + " ids per batch");
+            }
+            if (reader.peek() != JsonToken.STRING) {
+                throw new IllegalArgumentException("Ids must be strings");
+            }
+            ids.add(reader.nextString());
+        }
+        reader.endArray();
+        return ids;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        // toInput() writes null for callers without an account or user
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    List<String> getIds() {
+        return ids;
+    }
+
+    String getAccountId() {
+        return accountId;
+    }
+
+    String toInput() {
+        StringWriter buffer = new StringWriter(64 + ids.size() * 16);
+        try {
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.beginObject();
+            writer.name("ids").beginArray();
+            for (String id : ids) {
+                writer.value(id);
+            }
+            writer.endArray();
+            writer.name("accountId").value(accountId);
+            writer.name("userArn").value(userArn);
+            writer.endObject();
+            writer.flush();
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * @return the input of a single branch invocation for {@code id}, like the Map state passes it to the iterator
+     */
+    String itemInput(String id) {
+        return ListInput.of(id, accountId, userArn);
+    }
+}
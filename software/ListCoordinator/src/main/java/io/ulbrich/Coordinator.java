@@ -0,0 +1,111 @@
+package io.ulbrich;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Fans a request out to all list providers and merges their results.
+ * <p>
+ * The mode is selected with {@code COORDINATOR_MODE}:
+ * <ul>
+ *   <li>{@code STEP_FUNCTIONS} (default): starts a synchronous execution of the express state machine {@code SM_LIST_ARN}</li>
+ *   <li>{@code IN_PROCESS}: invokes the functions listed in {@code LIST_FUNCTIONS} (comma separated, in branch order)
+ *   concurrently from within the coordinator, bypassing Step Functions</li>
+ * </ul>
+ */
+public interface Coordinator {
+
+    Result coordinate(String input, Context context);
+
+    /**
+     * Exercises the request path up to, but excluding, the calls to the list providers. Used before a SnapStart
+     * checkpoint.
+     */
+    default void prime() {
+    }
+
+    static Coordinator fromEnvironment() {
+        String mode = System.getenv("COORDINATOR_MODE");
+        if ("IN_PROCESS".equals(mode)) {
+            // Clients are created during init, the suppliers pick up the ones replaced after a SnapStart restore
+            AwsClients.lambda();
+            return new InProcessCoordinator(AwsClients::lambda, listFunctions(), PhaseMetrics.instance());
+        }
+        AwsClients.sfn();
+        return new StepFunctionsCoordinator(AwsClients::sfn, System.getenv("SM_LIST_ARN"), PhaseMetrics.instance());
+    }
+
+    /**
+     * Coordinator for {@link BatchRequest batches}, selected by the same {@code COORDINATOR_MODE}:
+     * <ul>
+     *   <li>{@code STEP_FUNCTIONS}: starts a synchronous execution of the express state machine {@code SM_BATCH_ARN},
+     *   its Map state resolves the ids</li>
+     *   <li>{@code IN_PROCESS}: resolves the ids with a {@link BatchCoordinator}</li>
+     * </ul>
+     * In both modes at most {@code BATCH_CONCURRENCY} (default 10) ids are resolved concurrently.
+     */
+    static Coordinator batchFromEnvironment() {
+        String mode = System.getenv("COORDINATOR_MODE");
+        if ("IN_PROCESS".equals(mode)) {
+            List<String> functions = listFunctions();
+            int concurrency = batchConcurrency();
+            AwsClients.lambda();
+            InProcessCoordinator coordinator = new InProcessCoordinator(AwsClients::lambda, functions, PhaseMetrics.instance(),
+                    // Duplicated functions are invoked once per id, they need no thread of their own
+                    (int) functions.stream().distinct().count() * concurrency);
+            return new BatchCoordinator(coordinator, concurrency);
+        }
+        AwsClients.sfn();
+        return new StepFunctionsCoordinator(AwsClients::sfn, System.getenv("SM_BATCH_ARN"), PhaseMetrics.instance());
+    }
+
+    static int batchConcurrency() {
+        String concurrency = System.getenv("BATCH_CONCURRENCY");
+        return concurrency == null ? 10 : Integer.parseInt(concurrency);
+    }
+
+    private static List<String> listFunctions() {
+        return Arrays.stream(System.getenv("LIST_FUNCTIONS").split(","))
+                .map(String::trim)
+                .filter(f -> !f.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    class Result {
+        private final boolean succeeded;
+        private final String status;
+        private final String output;
+
+        private Result(boolean succeeded, String status, String output) {
+            this.succeeded = succeeded;
+            this.status = status;
+            this.output = output;
+        }
+
+        public static Result succeeded(String output) {
+            return new Result(true, "SUCCEEDED", output);
+        }
+
+        public static Result failed(String status, String output) {
+            return new Result(false, status, output);
+        }
+
+        public boolean isSucceeded() {
+            return succeeded;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the merged branch results as JSON array on success, error details otherwise
+         */
+        public String getOutput() {
+            return output;
+        }
+    }
+}
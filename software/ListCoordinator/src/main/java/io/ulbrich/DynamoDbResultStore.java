@@ -0,0 +1,60 @@
+package io.ulbrich;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * {@link ResultStore} backed by a DynamoDB table with the partition key {@code token} and TTL on {@code expiresAt}.
+ * <p>
+ * The attributes match the items written by the {@code Store Result} and {@code Store Failure} tasks of the async
+ * state machine. TTL deletes expired items only eventually, so {@link #get(String)} checks the expiry itself.
+ */
+public class DynamoDbResultStore implements ResultStore {
+    private final Supplier<DynamoDbClient> dynamoDb;
+    private final String tableName;
+
+    /**
+     * @param dynamoDb looked up for every request, so a client replaced after a SnapStart restore is picked up
+     */
+    public DynamoDbResultStore(Supplier<DynamoDbClient> dynamoDb, String tableName) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+    }
+
+    @Override
+    public void put(String token, Entry entry) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("token", AttributeValue.fromS(token));
+        item.put("status", AttributeValue.fromS(entry.getStatus().name()));
+        item.put("accountId", AttributeValue.fromS(entry.getAccountId()));
+        item.put("expiresAt", AttributeValue.fromN(Long.toString(entry.getExpiresAt())));
+        if (entry.getOutput() != null) {
+            item.put("output", AttributeValue.fromS(entry.getOutput()));
+        }
+        dynamoDb.get().putItem(r -> r.tableName(tableName).item(item));
+    }
+
+    @Override
+    public Optional<Entry> get(String token) {
+        Map<String, AttributeValue> item = dynamoDb.get().getItem(r -> r
+                .tableName(tableName)
+                .key(Map.of("token", AttributeValue.fromS(token)))
+                // The result is written by the state machine, an eventually consistent read could miss it
+                .consistentRead(true)).item();
+        if (item == null || item.isEmpty()) {
+            return Optional.empty();
+        }
+        AttributeValue output = item.get("output");
+        Entry entry = new Entry(
+                Status.valueOf(item.get("status").s()),
+                item.get("accountId").s(),
+                output != null ? output.s() : null,
+                Long.parseLong(item.get("expiresAt").n()));
+        return entry.isExpired(System.currentTimeMillis() / 1000) ? Optional.empty() : Optional.of(entry);
+    }
+}
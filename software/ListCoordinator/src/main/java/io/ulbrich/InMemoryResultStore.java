@@ -0,0 +1,28 @@
+package io.ulbrich;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ResultStore} kept in memory, for tests and the local emulator. Expired entries are dropped on the next put.
+ */
+public class InMemoryResultStore implements ResultStore {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String token, Entry entry) {
+        long now = System.currentTimeMillis() / 1000;
+        entries.values().removeIf(e -> e.isExpired(now));
+        entries.put(token, entry);
+    }
+
+    @Override
+    public Optional<Entry> get(String token) {
+        Entry entry = entries.get(token);
+        if (entry == null || entry.isExpired(System.currentTimeMillis() / 1000)) {
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+}
@@ -0,0 +1,159 @@
+package io.ulbrich;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.gson.JsonParser;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.InvokeResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Invokes the list provider functions concurrently from within the coordinator instead of going through the
+ * express state machine.
+ * <p>
+ * Every branch gets a deadline derived from {@link Context#getRemainingTimeInMillis()}, so a slow branch fails the
+ * request before the coordinator itself times out. The merged output has the same shape as the output of the
+ * {@code Fetch All} Parallel state: one {@code LambdaInvoke} result per branch, in branch order. With
+ * {@code BRANCH_OUTPUT=BODY}, matching the tasks' result selector, only the parsed body of every branch is kept.
+ * Like the state machine, a function listed more than once is invoked once and its result repeated at every position.
+ * The duration of every invocation is reported through {@link PhaseMetrics} with the function as branch.
+ */
+public class InProcessCoordinator implements Coordinator {
+    // Time kept back to build and return the response after the branches completed
+    private static final long RESPONSE_RESERVE_MILLIS = 500;
+
+    private final Supplier<LambdaClient> lambdaClient;
+    private final List<String> distinctFunctions;
+    // Position of every branch's function in distinctFunctions
+    private final int[] invocationOf;
+    private final ExecutorService executor;
+    private final PhaseMetrics metrics;
+    private final boolean bodyOnly = "BODY".equals(System.getenv("BRANCH_OUTPUT"));
+
+    public InProcessCoordinator(LambdaClient lambdaClient, List<String> functions) {
+        this(() -> lambdaClient, functions, PhaseMetrics.instance());
+    }
+
+    /**
+     * @param lambdaClient looked up for every request, so a client replaced after a SnapStart restore is picked up
+     */
+    public InProcessCoordinator(Supplier<LambdaClient> lambdaClient, List<String> functions, PhaseMetrics metrics) {
+        // Branch invocations block on I/O only, so one thread per invoked function
+        this(lambdaClient, functions, metrics, (int) functions.stream().distinct().count());
+    }
+
+    /**
+     * @param threads shared by all concurrent requests, e.g. distinct functions times ids resolved concurrently by a
+     *                {@link BatchCoordinator}
+     */
+    public InProcessCoordinator(Supplier<LambdaClient> lambdaClient, List<String> functions, PhaseMetrics metrics, int threads) {
+        this.lambdaClient = lambdaClient;
+        this.distinctFunctions = List.copyOf(new LinkedHashSet<>(functions));
+        this.invocationOf = functions.stream().mapToInt(distinctFunctions::indexOf).toArray();
+        this.metrics = metrics;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "list-branch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Result coordinate(String input, Context context) {
+        long deadlineMillis = context.getRemainingTimeInMillis() - RESPONSE_RESERVE_MILLIS;
+        if (deadlineMillis <= 0) {
+            return Result.failed("TIMED_OUT", "No time left to invoke the list providers");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+
+        List<CompletableFuture<InvokeResponse>> invocations = new ArrayList<>(distinctFunctions.size());
+        for (String function : distinctFunctions) {
+            invocations.add(CompletableFuture.supplyAsync(() -> invoke(function, input, deadlineMillis), executor));
+        }
+
+        String[] results = new String[invocations.size()];
+        for (int i = 0; i < invocations.size(); i++) {
+            InvokeResponse response;
+            try {
+                response = invocations.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                invocations.forEach(b -> b.cancel(true));
+                return Result.failed("TIMED_OUT", "Branch " + distinctFunctions.get(i) + " did not complete in time");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.failed("ABORTED", "Interrupted while waiting for " + distinctFunctions.get(i));
+            } catch (ExecutionException e) {
+                invocations.forEach(b -> b.cancel(true));
+                return Result.failed("FAILED", "Branch " + distinctFunctions.get(i) + " failed: " + e.getCause().getMessage());
+            }
+            if (response.functionError() != null) {
+                invocations.forEach(b -> b.cancel(true));
+                return Result.failed("FAILED", response.payload().asUtf8String());
+            }
+            results[i] = bodyOnly ? body(response) : invokeResult(response);
+        }
+
+        StringBuilder output = new StringBuilder(256).append('[');
+        for (int i = 0; i < invocationOf.length; i++) {
+            if (i > 0) {
+                output.append(',');
+            }
+            output.append(results[invocationOf[i]]);
+        }
+        return Result.succeeded(output.append(']').toString());
+    }
+
+    @Override
+    public void prime() {
+        // Starts the branch threads
+        List<CompletableFuture<Void>> branches = new ArrayList<>(distinctFunctions.size());
+        for (int i = 0; i < distinctFunctions.size(); i++) {
+            branches.add(CompletableFuture.runAsync(() -> SdkBytes.fromUtf8String("{}"), executor));
+        }
+        branches.forEach(CompletableFuture::join);
+    }
+
+    private InvokeResponse invoke(String function, String input, long timeoutMillis) {
+        InvokeResponse response = null;
+        long start = System.nanoTime();
+        try {
+            response = lambdaClient.get().invoke(r -> r
+                    .functionName(function)
+                    .payload(SdkBytes.fromUtf8String(input))
+                    .overrideConfiguration(c -> c.apiCallTimeout(Duration.ofMillis(timeoutMillis))));
+            return response;
+        } finally {
+            boolean succeeded = response != null && response.functionError() == null;
+            metrics.record("invoke", function, succeeded ? PhaseMetrics.SUCCESS : PhaseMetrics.FAILURE, start);
+        }
+    }
+
+    /**
+     * Mirrors the (relevant part of the) output of a {@code LambdaInvoke} task, the payload is embedded as JSON.
+     */
+    private static String invokeResult(InvokeResponse response) {
+        return "{\"ExecutedVersion\":\"" + response.executedVersion()
+                + "\",\"Payload\":" + response.payload().asUtf8String()
+                + ",\"StatusCode\":" + response.statusCode()
+                + '}';
+    }
+
+    /**
+     * Mirrors {@code States.StringToJson($.Payload.body)}.
+     */
+    private static String body(InvokeResponse response) {
+        String body = JsonParser.parseString(response.payload().asUtf8String()).getAsJsonObject().get("body").getAsString();
+        return JsonParser.parseString(body).toString();
+    }
+}
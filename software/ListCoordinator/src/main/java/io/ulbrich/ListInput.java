@@ -0,0 +1,42 @@
+package io.ulbrich;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * The compact state machine input of a single id, {@code {"id": ..., "accountId": ..., "userArn": ...}}.
+ * <p>
+ * It carries only what the list providers read (see {@code ListRequest}), every branch of every execution gets it.
+ */
+final class ListInput {
+
+    private ListInput() {
+    }
+
+    static String of(String id, String accountId, String userArn) {
+        StringWriter buffer = new StringWriter(128);
+        try {
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.beginObject();
+            writeFields(writer, id, accountId, userArn);
+            writer.endObject();
+            writer.flush();
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Writes the fields into the object {@code writer} is in, for inputs that carry more.
+     */
+    static void writeFields(JsonWriter writer, String id, String accountId, String userArn) throws IOException {
+        writer.name("id").value(id);
+        writer.name("accountId").value(accountId);
+        writer.name("userArn").value(userArn);
+    }
+}
@@ -0,0 +1,102 @@
+package io.ulbrich;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Serializes {@link App.Response} compactly into a per-thread buffer that is reused across invocations.
+ * <p>
+ * The coordinator output is already JSON. With {@link OutputEncoding#RAW} it is spliced into the response as JSON
+ * value instead of being escaped into a string, so clients do not have to parse it twice.
+ * {@link OutputEncoding#STRING} keeps the original response contract.
+ * The encoding is selected with {@code RESPONSE_OUTPUT_ENCODING}.
+ */
+final class ResponseWriter {
+    // Buffers that grew beyond this size by a huge response are not kept for the next invocation
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    enum OutputEncoding {
+        STRING, RAW
+    }
+
+    private final OutputEncoding outputEncoding;
+    private final ThreadLocal<StringWriter> buffers = ThreadLocal.withInitial(() -> new StringWriter(1024));
+
+    ResponseWriter(OutputEncoding outputEncoding) {
+        this.outputEncoding = outputEncoding;
+    }
+
+    static ResponseWriter fromEnvironment() {
+        String encoding = System.getenv("RESPONSE_OUTPUT_ENCODING");
+        return new ResponseWriter(encoding == null ? OutputEncoding.STRING : OutputEncoding.valueOf(encoding));
+    }
+
+    String write(App.Response response) {
+        StringWriter buffer = buffers.get();
+        buffer.getBuffer().setLength(0);
+        try {
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.setSerializeNulls(false);
+            writer.beginObject();
+            writer.name("accountId").value(response.getAccountId());
+            if (response.getIds() != null) {
+                writer.name("ids").beginArray();
+                for (String id : response.getIds()) {
+                    writer.value(id);
+                }
+                writer.endArray();
+            }
+            writeOutput(writer, response.getOutput());
+            writer.endObject();
+            writer.flush();
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return release(buffer);
+    }
+
+    /**
+     * Writes the state of an asynchronous execution, the output is encoded like in {@link #write(App.Response)}.
+     */
+    String write(String token, ResultStore.Entry execution) {
+        StringWriter buffer = buffers.get();
+        buffer.getBuffer().setLength(0);
+        try {
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.setSerializeNulls(false);
+            writer.beginObject();
+            writer.name("token").value(token);
+            writer.name("status").value(execution.getStatus().name());
+            writer.name("accountId").value(execution.getAccountId());
+            if (execution.getOutput() != null) {
+                writeOutput(writer, execution.getOutput());
+            }
+            writer.endObject();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return release(buffer);
+    }
+
+    private void writeOutput(JsonWriter writer, String output) throws IOException {
+        writer.name("output");
+        if (outputEncoding == OutputEncoding.RAW) {
+            writer.jsonValue(output);
+        } else {
+            writer.value(output);
+        }
+    }
+
+    private String release(StringWriter buffer) {
+        String json = buffer.toString();
+        if (buffer.getBuffer().capacity() > MAX_RETAINED_CAPACITY) {
+            buffers.remove();
+        }
+        return json;
+    }
+}
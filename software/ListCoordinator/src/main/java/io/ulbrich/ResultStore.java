@@ -0,0 +1,65 @@
+package io.ulbrich;
+
+import java.util.Optional;
+
+/**
+ * Short-lived store of asynchronous executions, keyed by their token.
+ * <p>
+ * The coordinator puts a {@link Status#RUNNING} entry before it starts an execution, the async state machine
+ * overwrites it with the result. Entries expire at {@link Entry#getExpiresAt()}, expired entries are not returned
+ * even if the store did not delete them yet.
+ */
+public interface ResultStore {
+
+    enum Status {
+        RUNNING, SUCCEEDED, FAILED
+    }
+
+    void put(String token, Entry entry);
+
+    /**
+     * @return the entry, empty if the token is unknown or the entry expired
+     */
+    Optional<Entry> get(String token);
+
+    class Entry {
+        private final Status status;
+        private final String accountId;
+        private final String output;
+        private final long expiresAt;
+
+        /**
+         * @param output the merged branch results on success, error details on failure, {@code null} while running
+         * @param expiresAt epoch seconds
+         */
+        public Entry(Status status, String accountId, String output, long expiresAt) {
+            this.status = status;
+            this.accountId = accountId;
+            this.output = output;
+            this.expiresAt = expiresAt;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the account that started the execution, only that account gets to read the result
+         */
+        public String getAccountId() {
+            return accountId;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        boolean isExpired(long nowSeconds) {
+            return expiresAt <= nowSeconds;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.ulbrich;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import software.amazon.awssdk.services.sfn.SfnClient;
+import software.amazon.awssdk.services.sfn.model.StartSyncExecutionRequest;
+import software.amazon.awssdk.services.sfn.model.StartSyncExecutionResponse;
+import software.amazon.awssdk.services.sfn.model.SyncExecutionStatus;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Runs the express state machine synchronously, its Parallel state fans out to the list providers.
+ * The duration of {@code startSyncExecution} is reported through {@link PhaseMetrics}.
+ */
+public class StepFunctionsCoordinator implements Coordinator {
+    private final Supplier<SfnClient> sfnClient;
+    private final String stateMachineArn;
+    private final PhaseMetrics metrics;
+
+    public StepFunctionsCoordinator(SfnClient sfnClient, String stateMachineArn) {
+        this(() -> sfnClient, stateMachineArn, PhaseMetrics.instance());
+    }
+
+    /**
+     * @param sfnClient looked up for every request, so a client replaced after a SnapStart restore is picked up
+     */
+    public StepFunctionsCoordinator(Supplier<SfnClient> sfnClient, String stateMachineArn, PhaseMetrics metrics) {
+        this.sfnClient = sfnClient;
+        this.stateMachineArn = stateMachineArn;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Result coordinate(String input, Context context) {
+        StartSyncExecutionRequest executionRequest = executionRequest(input);
+        StartSyncExecutionResponse result = null;
+        long start = System.nanoTime();
+        try {
+            result = sfnClient.get().startSyncExecution(executionRequest);
+        } finally {
+            boolean succeeded = result != null && result.status() == SyncExecutionStatus.SUCCEEDED;
+            metrics.record("startSyncExecution", PhaseMetrics.ALL_BRANCHES, succeeded ? PhaseMetrics.SUCCESS : PhaseMetrics.FAILURE, start);
+        }
+        return toResult(result);
+    }
+
+    @Override
+    public void prime() {
+        executionRequest("{}");
+        toResult(StartSyncExecutionResponse.builder().status(SyncExecutionStatus.SUCCEEDED).output("[]").build());
+    }
+
+    private StartSyncExecutionRequest executionRequest(String input) {
+        return StartSyncExecutionRequest.builder()
+                .input(input)
+                .stateMachineArn(stateMachineArn)
+                .name(UUID.randomUUID().toString())
+                .build();
+    }
+
+    private static Result toResult(StartSyncExecutionResponse result) {
+        if (result.status() == SyncExecutionStatus.SUCCEEDED) {
+            return Result.succeeded(result.output());
+        }
+        // Failed executions carry their details in error and cause instead of output
+        return Result.failed(result.statusAsString(), result.output() != null ? result.output() : result.error() + ": " + result.cause());
+    }
+}
@@ -0,0 +1,81 @@
+package io.ulbrich;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.google.gson.Gson;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AppTest {
+    @Rule
+    public final CapturedTelemetry telemetry = new CapturedTelemetry();
+
+    private final AtomicInteger coordinations = new AtomicInteger();
+    private App app;
+
+    @Before
+    public void setUp() {
+        Coordinator coordinator = (input, context) -> {
+            coordinations.incrementAndGet();
+            return Coordinator.Result.succeeded("[]");
+        };
+        app = new App(coordinator, coordinator, null, new ResponseWriter(ResponseWriter.OutputEncoding.STRING),
+                telemetry.metrics(), new PayloadSampler(1));
+    }
+
+    @Test
+    public void primingNeverCoordinates() throws IOException {
+        app.beforeCheckpoint(null);
+        app.afterRestore(null);
+
+        assertEquals(0, coordinations.get());
+        telemetry.assertNothingRecorded();
+    }
+
+    @Test
+    public void restoredAppCoordinates() throws IOException {
+        app.beforeCheckpoint(null);
+        app.afterRestore(null);
+
+        APIGatewayProxyRequestEvent input;
+        try (InputStream event = AppTest.class.getResourceAsStream("/priming/lambda_proxy_input.json")) {
+            input = new Gson().fromJson(new InputStreamReader(event, UTF_8), APIGatewayProxyRequestEvent.class);
+        }
+        APIGatewayProxyResponseEvent response = app.handleRequest(input, PrimingContext.INSTANCE);
+
+        assertEquals(200, response.getStatusCode().intValue());
+        assertEquals(1, coordinations.get());
+        telemetry.assertRecorded(List.of("serialization"), "Sampled coordination");
+    }
+
+    @Test
+    public void responseCacheNeverServesStaleResponses() throws Exception {
+        Map<String, String> environment = Map.of("RESPONSE_CACHE_TTL_SECONDS", "1", "RESPONSE_CACHE_STALE_SECONDS", "60");
+        TtlCache<App.CacheKey, Coordinator.Result> cache = App.responseCache(PhaseMetrics.disabled(), environment::get);
+        App.CacheKey key = new App.CacheKey("1234", "123456789012");
+
+        cache.get(key, k -> Coordinator.Result.succeeded("[\"first\"]"));
+        Thread.sleep(1_100);
+
+        // Expired, the stale window configured in the environment is ignored
+        assertEquals("[\"second\"]", cache.get(key, k -> Coordinator.Result.succeeded("[\"second\"]")).getOutput());
+    }
+
+    @Test
+    public void responseCacheIsDisabledByDefault() {
+        assertNull(App.responseCache(PhaseMetrics.disabled(), name -> null));
+        assertNull(App.responseCache(PhaseMetrics.disabled(), Map.of("RESPONSE_CACHE_TTL_SECONDS", "0")::get));
+    }
+}
@@ -0,0 +1,124 @@
+package io.ulbrich;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import software.amazon.awssdk.services.sfn.SfnClient;
+import software.amazon.awssdk.services.sfn.model.SfnException;
+import software.amazon.awssdk.services.sfn.model.StartExecutionRequest;
+import software.amazon.awssdk.services.sfn.model.StartExecutionResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncCoordinatorTest {
+    private static final String STATE_MACHINE_ARN = "arn:aws:states:eu-central-1:123456789012:stateMachine:async";
+    private static final String ACCOUNT_ID = "123456789012";
+    private static final String OTHER_ACCOUNT_ID = "210987654321";
+
+    private final List<StartExecutionRequest> started = new ArrayList<>();
+    private final InMemoryResultStore resultStore = new InMemoryResultStore();
+    private final List<String> tokens = new ArrayList<>();
+    private final ResultStore recordingStore = new ResultStore() {
+        @Override
+        public void put(String token, Entry entry) {
+            tokens.add(token);
+            resultStore.put(token, entry);
+        }
+
+        @Override
+        public Optional<Entry> get(String token) {
+            return resultStore.get(token);
+        }
+    };
+    private volatile RuntimeException startFailure;
+
+    private final SfnClient sfn = new SfnClient() {
+        @Override
+        public StartExecutionResponse startExecution(StartExecutionRequest request) {
+            if (startFailure != null) {
+                throw startFailure;
+            }
+            started.add(request);
+            return StartExecutionResponse.builder().executionArn(STATE_MACHINE_ARN + ":" + request.name()).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private final AsyncCoordinator coordinator = new AsyncCoordinator(() -> sfn, STATE_MACHINE_ARN, recordingStore,
+            Duration.ofMinutes(15), PhaseMetrics.disabled());
+
+    @Test
+    public void startsExecutionNamedAfterRunningEntry() {
+        String token = coordinator.start("1234", ACCOUNT_ID, "arn:aws:iam::123456789012:user/some-user");
+
+        assertEquals(1, started.size());
+        StartExecutionRequest request = started.get(0);
+        assertEquals(STATE_MACHINE_ARN, request.stateMachineArn());
+        assertEquals(token, request.name());
+        JsonObject input = JsonParser.parseString(request.input()).getAsJsonObject();
+        assertEquals(token, input.get("token").getAsString());
+        assertEquals("1234", input.get("id").getAsString());
+        assertEquals(ACCOUNT_ID, input.get("accountId").getAsString());
+
+        ResultStore.Entry entry = coordinator.get(token, ACCOUNT_ID).orElseThrow();
+        assertEquals(ResultStore.Status.RUNNING, entry.getStatus());
+        assertEquals(input.get("expiresAt").getAsString(), Long.toString(entry.getExpiresAt()));
+    }
+
+    @Test
+    public void failedStartDoesNotLeaveRunningEntry() {
+        startFailure = SfnException.builder().message("Rate exceeded").build();
+
+        assertThrows(SfnException.class, () -> coordinator.start("1234", ACCOUNT_ID, null));
+
+        // The token never reached the caller, but the entry must not pretend the execution is still coming
+        assertEquals(2, tokens.size());
+        assertEquals(tokens.get(0), tokens.get(1));
+        ResultStore.Entry entry = coordinator.get(tokens.get(0), ACCOUNT_ID).orElseThrow();
+        assertEquals(ResultStore.Status.FAILED, entry.getStatus());
+        assertTrue(entry.getOutput(), entry.getOutput().contains("Rate exceeded"));
+    }
+
+    @Test
+    public void statusIsOnlyReturnedToStartingAccount() {
+        String token = coordinator.start("1234", ACCOUNT_ID, null);
+        resultStore.put(token, new ResultStore.Entry(ResultStore.Status.SUCCEEDED, ACCOUNT_ID, "[]",
+                System.currentTimeMillis() / 1000 + 60));
+
+        assertEquals("[]", coordinator.get(token, ACCOUNT_ID).map(ResultStore.Entry::getOutput).orElseThrow());
+        assertEquals(Optional.empty(), coordinator.get(token, OTHER_ACCOUNT_ID));
+        assertEquals(Optional.empty(), coordinator.get(token, null));
+        assertEquals(Optional.empty(), coordinator.get("unknown", ACCOUNT_ID));
+    }
+
+    @Test
+    public void entriesWithoutAccountAreNotReturned() {
+        resultStore.put("token", new ResultStore.Entry(ResultStore.Status.SUCCEEDED, null, "[]",
+                System.currentTimeMillis() / 1000 + 60));
+
+        assertEquals(Optional.empty(), coordinator.get("token", null));
+        assertEquals(Optional.empty(), coordinator.get("token", ACCOUNT_ID));
+    }
+
+    @Test
+    public void expiredEntriesAreNotReturned() {
+        resultStore.put("token", new ResultStore.Entry(ResultStore.Status.SUCCEEDED, ACCOUNT_ID, "[]",
+                System.currentTimeMillis() / 1000 - 1));
+
+        assertEquals(Optional.empty(), coordinator.get("token", ACCOUNT_ID));
+    }
+}
@@ -0,0 +1,97 @@
+package io.ulbrich;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class BatchCoordinatorTest {
+    private final Map<String, AtomicInteger> coordinations = new ConcurrentHashMap<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // Answers with the id, "failing" fails and "slow" blocks until released
+    private final Coordinator items = (input, context) -> {
+        String id = JsonParser.parseString(input).getAsJsonObject().get("id").getAsString();
+        coordinations.computeIfAbsent(id, i -> new AtomicInteger()).incrementAndGet();
+        if ("failing".equals(id)) {
+            return Coordinator.Result.failed("FAILED", "branch failed");
+        }
+        if ("slow".equals(id)) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return Coordinator.Result.succeeded("{\"id\":\"" + id + "\"}");
+    };
+    private final BatchCoordinator coordinator = new BatchCoordinator(items, 2);
+
+    @Test
+    public void resolvesIdsInRequestOrder() {
+        Coordinator.Result result = coordinate(List.of("3", "1", "2"), 10_000);
+
+        assertTrue(result.isSucceeded());
+        assertEquals(JsonParser.parseString("[{\"id\":\"3\"},{\"id\":\"1\"},{\"id\":\"2\"}]"),
+                JsonParser.parseString(result.getOutput()));
+    }
+
+    @Test
+    public void duplicateIdsAreResolvedOnce() {
+        Coordinator.Result result = coordinate(List.of("1", "2", "1", "1"), 10_000);
+
+        assertEquals(JsonParser.parseString("[{\"id\":\"1\"},{\"id\":\"2\"},{\"id\":\"1\"},{\"id\":\"1\"}]"),
+                JsonParser.parseString(result.getOutput()));
+        assertEquals(1, coordinations.get("1").get());
+        assertEquals(1, coordinations.get("2").get());
+    }
+
+    @Test
+    public void failingIdFailsTheBatch() {
+        Coordinator.Result result = coordinate(List.of("1", "failing", "2"), 10_000);
+
+        assertFalse(result.isSucceeded());
+        assertEquals("FAILED", result.getStatus());
+        assertEquals("Id failing: branch failed", result.getOutput());
+    }
+
+    @Test
+    public void itemsAreBoundByTheRemainingTimeMinusTheResponseReserve() {
+        long start = System.nanoTime();
+        Coordinator.Result result = coordinate(List.of("1", "slow"), 800);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        release.countDown();
+
+        assertEquals("TIMED_OUT", result.getStatus());
+        assertEquals("Id slow did not complete in time", result.getOutput());
+        // 800 ms remaining leave 300 ms for the items
+        assertTrue("Gave up after " + elapsedMillis + " ms", elapsedMillis >= 250 && elapsedMillis < 700);
+    }
+
+    @Test
+    public void noItemIsStartedWithoutTimeLeft() {
+        Coordinator.Result result = coordinate(List.of("1"), 500);
+
+        assertEquals("TIMED_OUT", result.getStatus());
+        assertTrue(coordinations.isEmpty());
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        assertThrows(IllegalArgumentException.class, () -> coordinator.coordinate("[\"1\"]", new TestContext("1", 10_000)));
+    }
+
+    private Coordinator.Result coordinate(List<String> ids, int remainingTimeInMillis) {
+        String input = new BatchRequest(ids, "123456789012", "arn:aws:iam::123456789012:user/some-user").toInput();
+        return coordinator.coordinate(input, new TestContext("1", remainingTimeInMillis));
+    }
+}
@@ -0,0 +1,78 @@
+package io.ulbrich;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class BatchRequestTest {
+    private static final String ACCOUNT_ID = "123456789012";
+    private static final String USER_ARN = "arn:aws:iam::123456789012:user/some-user";
+
+    @Test
+    public void readsIdsAndIgnoresOtherFields() {
+        BatchRequest request = fromBody("{\"other\":{\"ids\":[1]},\"ids\":[\"1\",\"2\"],\"more\":true}");
+
+        assertEquals(List.of("1", "2"), request.getIds());
+        assertEquals(ACCOUNT_ID, request.getAccountId());
+    }
+
+    @Test
+    public void rejectsMalformedBatches() {
+        for (String body : new String[]{null, "", "[]", "{", "{\"ids\":\"1\"}", "{\"ids\":[\"1\"", "{\"ids\":{}}",
+                "{\"ids\":[\"1\"]} trailing"}) {
+            assertThrows(body, IllegalArgumentException.class, () -> fromBody(body));
+        }
+    }
+
+    @Test
+    public void rejectsIdsThatAreNotStrings() {
+        assertThrows(IllegalArgumentException.class, () -> fromBody("{\"ids\":[\"1\",2]}"));
+        assertThrows(IllegalArgumentException.class, () -> fromBody("{\"ids\":[null]}"));
+        assertThrows(IllegalArgumentException.class, () -> fromBody("{\"ids\":[[\"1\"]]}"));
+    }
+
+    @Test
+    public void rejectsEmptyAndOversizedBatches() {
+        assertThrows(IllegalArgumentException.class, () -> fromBody("{}"));
+        assertThrows(IllegalArgumentException.class, () -> fromBody("{\"ids\":[]}"));
+        assertEquals(3, fromBody("{\"ids\":[\"1\",\"2\",\"3\"]}").getIds().size());
+        assertThrows(IllegalArgumentException.class, () -> fromBody("{\"ids\":[\"1\",\"2\",\"3\",\"4\"]}"));
+    }
+
+    @Test
+    public void keepsDuplicateIds() {
+        // The response has one output per requested id, duplicates included
+        assertEquals(List.of("1", "2", "1"), fromBody("{\"ids\":[\"1\",\"2\",\"1\"]}").getIds());
+    }
+
+    @Test
+    public void inputRoundTrip() {
+        BatchRequest request = fromBody("{\"ids\":[\"1\",\"quote\\\"\"]}");
+
+        String input = request.toInput();
+        assertEquals(JsonParser.parseString("{\"ids\":[\"1\",\"quote\\\"\"],\"accountId\":\"" + ACCOUNT_ID
+                + "\",\"userArn\":\"" + USER_ARN + "\"}"), JsonParser.parseString(input));
+        BatchRequest read = BatchRequest.fromInput(input);
+        assertEquals(request.getIds(), read.getIds());
+        assertEquals(ACCOUNT_ID, read.getAccountId());
+        assertEquals(JsonParser.parseString("{\"id\":\"quote\\\"\",\"accountId\":\"" + ACCOUNT_ID + "\",\"userArn\":\""
+                + USER_ARN + "\"}"), JsonParser.parseString(read.itemInput("quote\"")));
+    }
+
+    @Test
+    public void inputWithoutCaller() {
+        BatchRequest read = BatchRequest.fromInput(new BatchRequest(List.of("1"), null, null).toInput());
+
+        assertEquals(List.of("1"), read.getIds());
+        assertNull(read.getAccountId());
+    }
+
+    private static BatchRequest fromBody(String body) {
+        return BatchRequest.fromBody(body, 3, ACCOUNT_ID, USER_ARN);
+    }
+}
@@ -0,0 +1,73 @@
+package io.ulbrich;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.InvokeRequest;
+import software.amazon.awssdk.services.lambda.model.InvokeResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InProcessCoordinatorTest {
+    private final Map<String, AtomicInteger> invocations = new ConcurrentHashMap<>();
+
+    // Every function answers with its name as body
+    private final LambdaClient lambda = new LambdaClient() {
+        @Override
+        public InvokeResponse invoke(InvokeRequest request) {
+            invocations.computeIfAbsent(request.functionName(), f -> new AtomicInteger()).incrementAndGet();
+            return InvokeResponse.builder()
+                    .statusCode(200)
+                    .executedVersion("$LATEST")
+                    .payload(SdkBytes.fromUtf8String("{\"statusCode\":200,\"body\":\"{\\\"list\\\":\\\""
+                            + request.functionName() + "\\\"}\"}"))
+                    .build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Test
+    public void functionListedTwiceIsInvokedOnce() {
+        InProcessCoordinator coordinator = new InProcessCoordinator(() -> lambda, List.of("foo", "bar", "foo"),
+                PhaseMetrics.disabled());
+
+        Coordinator.Result result = coordinator.coordinate(ListInput.of("1", "123456789012", null), new TestContext("1", 10_000));
+
+        assertTrue(result.isSucceeded());
+        assertEquals(1, invocations.get("foo").get());
+        assertEquals(1, invocations.get("bar").get());
+        String foo = "{\"ExecutedVersion\":\"$LATEST\",\"Payload\":{\"statusCode\":200,\"body\":\"{\\\"list\\\":\\\"foo\\\"}\"},\"StatusCode\":200}";
+        String bar = foo.replace("foo", "bar");
+        assertEquals(JsonParser.parseString("[" + foo + "," + bar + "," + foo + "]"), JsonParser.parseString(result.getOutput()));
+    }
+
+    @Test
+    public void batchOfDuplicateIdsInvokesEveryFunctionOncePerDistinctId() {
+        InProcessCoordinator items = new InProcessCoordinator(() -> lambda, List.of("foo", "bar", "foo"),
+                PhaseMetrics.disabled(), 4);
+        BatchCoordinator coordinator = new BatchCoordinator(items, 2);
+
+        Coordinator.Result result = coordinator.coordinate(new BatchRequest(List.of("1", "2", "1"), "123456789012", null).toInput(),
+                new TestContext("1", 10_000));
+
+        assertTrue(result.isSucceeded());
+        assertEquals(3, JsonParser.parseString(result.getOutput()).getAsJsonArray().size());
+        assertEquals(2, invocations.get("foo").get());
+        assertEquals(2, invocations.get("bar").get());
+    }
+}
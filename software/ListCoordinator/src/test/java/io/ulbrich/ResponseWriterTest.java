@@ -0,0 +1,100 @@
+package io.ulbrich;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * The responses have to stay semantically identical to the ones serialized by Gson before.
+ */
+public class ResponseWriterTest {
+    private static final String OUTPUT = "[{\"ExecutedVersion\":\"$LATEST\",\"Payload\":{\"statusCode\":200,"
+            + "\"body\":\"{ \\\"message\\\": \\\"Hello from Foo\\\", \\\"location\\\": \\\"127.0.0.1\\\" }\"},\"StatusCode\":200}]";
+
+    private final Gson gson = new Gson();
+    private final ResponseWriter stringWriter = new ResponseWriter(ResponseWriter.OutputEncoding.STRING);
+    private final ResponseWriter rawWriter = new ResponseWriter(ResponseWriter.OutputEncoding.RAW);
+
+    @Test
+    public void singleResponse() {
+        assertSameAsGson(new App.Response("123456789012", OUTPUT));
+    }
+
+    @Test
+    public void batchResponse() {
+        assertSameAsGson(new App.Response("123456789012", List.of("1", "2", "3"), "[" + OUTPUT + "," + OUTPUT + "]"));
+    }
+
+    @Test
+    public void emptyLists() {
+        assertSameAsGson(new App.Response("123456789012", List.of(), "[]"));
+        assertSameAsGson(new App.Response("123456789012", "[]"));
+    }
+
+    @Test
+    public void escaping() {
+        assertSameAsGson(new App.Response("quote\" backslash\\ <tag>&='\n\t\u0001",
+                "[{\"body\":\"line\\nbreak \\\"quoted\\\" \\\\ </script>\"}]"));
+    }
+
+    @Test
+    public void unicode() {
+        assertSameAsGson(new App.Response("Gr\u00fc\u00dfe \u65e5\u672c \ud83d\ude00 \u2028\u2029",
+                "[{\"body\":\"Gr\u00fc\u00dfe \\u65e5 \ud83d\ude00\"}]"));
+    }
+
+    @Test
+    public void nullFieldsAreOmitted() {
+        App.Response response = new App.Response(null, null, null);
+
+        assertSameAsGson(response);
+        assertEquals("{}", stringWriter.write(response));
+        assertEquals("{}", rawWriter.write(response));
+    }
+
+    @Test
+    public void reusedBufferDoesNotLeakIntoNextResponse() {
+        stringWriter.write(new App.Response("123456789012", List.of("1", "2"), "[" + OUTPUT + "," + OUTPUT + "]"));
+
+        assertSameAsGson(new App.Response("1", "[]"));
+    }
+
+    @Test
+    public void execution() {
+        ResultStore.Entry entry = new ResultStore.Entry(ResultStore.Status.SUCCEEDED, "123456789012", OUTPUT, 1_700_000_000L);
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("token", "t\"1");
+        expected.put("status", "SUCCEEDED");
+        expected.put("accountId", "123456789012");
+        expected.put("output", OUTPUT);
+
+        assertEquals(JsonParser.parseString(gson.toJson(expected)), JsonParser.parseString(stringWriter.write("t\"1", entry)));
+        JsonObject raw = JsonParser.parseString(rawWriter.write("t\"1", entry)).getAsJsonObject();
+        assertEquals(JsonParser.parseString(OUTPUT), raw.get("output"));
+
+        JsonObject running = JsonParser.parseString(stringWriter.write("t1",
+                new ResultStore.Entry(ResultStore.Status.RUNNING, "123456789012", null, 1_700_000_000L))).getAsJsonObject();
+        assertFalse(running.has("output"));
+    }
+
+    private void assertSameAsGson(App.Response response) {
+        JsonElement expected = JsonParser.parseString(gson.toJson(response));
+        assertEquals(expected, JsonParser.parseString(stringWriter.write(response)));
+
+        // RAW differs only in the output, which is embedded as JSON instead of as string
+        JsonObject expectedRaw = expected.getAsJsonObject().deepCopy();
+        if (response.getOutput() != null) {
+            expectedRaw.add("output", JsonParser.parseString(response.getOutput()));
+        }
+        assertEquals(expectedRaw, JsonParser.parseString(rawWriter.write(response)));
+    }
+}
@@ -0,0 +1,29 @@
+package io.ulbrich;
+
+/**
+ * A list served by a {@link ListProviderHandler}.
+ * <p>
+ * Providers only build the list body, the handler core takes care of reading the request, fetching (and caching)
+ * the upstream resource, serializing the response and metrics.
+ */
+public interface ListProvider {
+
+    /**
+     * @return short name of the list, e.g. {@code Foo}
+     */
+    String name();
+
+    /**
+     * @return URL of the upstream resource the list is built from, fetched through the shared cache
+     */
+    default String upstreamUrl() {
+        return ListProviderHandler.LOCATION_URL;
+    }
+
+    /**
+     * @param request  the fields of the state machine input relevant for lists
+     * @param upstream contents of {@link #upstreamUrl()}
+     * @return the JSON body of the response
+     */
+    String body(ListRequest request, String upstream);
+}
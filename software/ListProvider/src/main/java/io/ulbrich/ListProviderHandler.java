@@ -0,0 +1,222 @@
+package io.ulbrich;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.google.gson.stream.JsonWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.crac.Core;
+import org.crac.Resource;
+import software.amazon.lambda.powertools.metrics.Metrics;
+import software.amazon.lambda.powertools.tracing.Tracing;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.time.Duration;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static software.amazon.lambda.powertools.tracing.CaptureMode.DISABLED;
+
+/**
+ * Handler core shared by all list provider functions, the list itself comes from a {@link ListProvider}.
+ * <p>
+ * Reads the {@link ListRequest} fields from the input stream, fetches the upstream resource through a {@link TtlCache}
+ * with a {@link PageFetcher}, whose deadline leaves enough of the remaining invocation time to answer (background
+ * refreshes of a stale page have a fixed 5 s deadline), and writes the response straight to the output stream in the
+ * shape the runtime produces for an {@code APIGatewayProxyResponseEvent}, which is what the {@code LambdaInvoke} tasks
+ * expect.
+ * Bodies of at least {@code BODY_COMPRESSION_MIN_LENGTH} characters (unset: never) are {@link CompressedPayload compressed}.
+ * The time spent in the fetch and in serialization is reported through {@link PhaseMetrics}.
+ * Request and response are logged on failures, for a {@link PayloadSampler sample} of the requests and on DEBUG.
+ * <p>
+ * SnapStart: before the checkpoint the handler is run against the {@code priming/} fixture, after fetching the
+ * upstream resource once, priming is skipped if that fails. Priming requests are not reported as metrics and never sampled. After the restore the page cache is invalidated, the HTTP client and the payload sampling
+ * random replaced.
+ * <p>
+ * Note regarding IAM Authentication
+ * <p>
+ * Lambda directly:
+ * <ul>
+ *   <li>available by default with LAMBDA_PROXY integration</li>
+ *   <li>identify caller: requestContext={identity={accountId=some-account, userArn=arn:aws:iam::some-account:user/some-user}}</li>
+ *   <ul>
+ *       <li>if RequestHandler&lt;APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent&gt; is used: input.getRequestContext().getIdentity().getUserArn();</li>
+ *       <li>if RequestHandler&lt;Map&lt;String, Object&gt, APIGatewayProxyResponseEvent&gt; is used: manual lookup</li>
+ *   </ul>
+ * </ul>
+ * StepFunction directly:
+ * <ul>
+ *   <li>requires CDK integration setting requestContext with userArn + accountId to generate respective mapping template (StepFunctionsExecutionIntegrationOptions)</li>
+ *   <li>identify caller: requestContext={accountId=some-account, userArn=arn:aws:iam::some-account:user/some-user}</li>
+ *   <li>MyTestApi maps only the id and the caller by default, read from the compact input
+ *   {id=1234, accountId=some-account, userArn=arn:aws:iam::some-account:user/some-user} (see {@link ListRequest})</li>
+ *   <ul><li>available in {@link ListRequest}</li></ul>
+ *   <li>Note: it would also be possible to get the attribute in "identity" similar to the lambda integration. But CDK decided to drop the identity envelope</li>
+ * </ul>
+ * <pre>{@code
+ * #if ($includeIdentity)
+ *     #set($inputString = "$inputString, @@identity@@:{")
+ *     #foreach($paramName in $context.identity.keySet())
+ *         #set($inputString = "$inputString @@$paramName@@: @@$util.escapeJavaScript($context.identity.get($paramName))@@")
+ *         #if($foreach.hasNext)
+ *             #set($inputString = "$inputString,")
+ *         #end
+ *     #end
+ * #set($inputString = "$inputString }")
+ * #end
+ * }</pre>
+ * See <a href="https://docs.aws.amazon.com/apigateway/latest/developerguide/api-gateway-mapping-template-reference.html#context-variable-reference">Mapping template reference</a>
+ * <ul>
+ *  <li>$context.identity.accountId</li>
+ *  <li>$context.identity.userArn</li>
+ * </ul>
+ */
+public class ListProviderHandler implements RequestStreamHandler, Resource {
+    private static final Logger LOG = LogManager.getLogger(ListProviderHandler.class);
+    // Enough to get the request path compiled by C1
+    private static final int PRIMING_INVOCATIONS = 1_000;
+    // The one upstream fetch before the checkpoint, an unreachable upstream must not stall the snapshot
+    private static final Duration PRIMING_FETCH_TIMEOUT = Duration.ofSeconds(2);
+    // Time kept back to write the response, an upstream failure is still answered instead of timing out the branch
+    private static final long RESPONSE_RESERVE_MILLIS = 500;
+    // Background refreshes are not bound to an invocation, they must not inherit the deadline of the one triggering them
+    private static final Duration REFRESH_TIMEOUT = Duration.ofSeconds(5);
+
+    static final String LOCATION_URL = Objects.requireNonNullElse(System.getenv("LOCATION_URL"), "https://checkip.amazonaws.com");
+
+    private final ListProvider provider;
+    private final PageFetcher pageFetcher;
+    private final TtlCache<String, String> pageCache;
+    private final PhaseMetrics metrics;
+    private final PayloadSampler payloadSampler;
+    private final int compressionMinLength;
+
+    public ListProviderHandler(ListProvider provider) {
+        this(provider, new PageFetcher(), PhaseMetrics.instance(), PayloadSampler.fromEnvironment());
+    }
+
+    ListProviderHandler(ListProvider provider, PageFetcher pageFetcher, PhaseMetrics metrics, PayloadSampler payloadSampler) {
+        // The upstream content practically never changes within the lifetime of an execution environment
+        this(provider, pageFetcher, TtlCache.<String, String>builder(url -> pageFetcher.getPageContents(url, REFRESH_TIMEOUT))
+                .fromEnvironment("PAGE_CACHE")
+                .build(), metrics, payloadSampler);
+        Core.getGlobalContext().register(this);
+    }
+
+    private ListProviderHandler(ListProvider provider, PageFetcher pageFetcher, TtlCache<String, String> pageCache,
+                                PhaseMetrics metrics, PayloadSampler payloadSampler) {
+        this.provider = provider;
+        this.metrics = metrics;
+        this.payloadSampler = payloadSampler;
+        this.pageFetcher = pageFetcher;
+        String compressionMinLength = System.getenv("BODY_COMPRESSION_MIN_LENGTH");
+        this.compressionMinLength = compressionMinLength == null ? 0 : Integer.parseInt(compressionMinLength);
+        this.pageCache = pageCache;
+    }
+
+    @Tracing(captureMode = DISABLED)
+    @Metrics(captureColdStart = true)
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        try {
+            handle(input, output, context);
+        } finally {
+            metrics.flush();
+        }
+    }
+
+    /**
+     * Runs the request path without the powertools aspects, they expect a real invocation. The upstream is fetched
+     * once, priming is skipped if that fails. The priming requests are neither recorded as metrics nor sampled, they
+     * run on a copy of the handler sharing only the fetcher, with a page cache holding the fetched page.
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws IOException {
+        byte[] event;
+        try (InputStream input = ListProviderHandler.class.getResourceAsStream("/priming/stepfunction_input.json")) {
+            if (input == null) {
+                throw new IOException("Missing priming fixture");
+            }
+            event = input.readAllBytes();
+        }
+        String url = provider.upstreamUrl();
+        String page;
+        try {
+            page = pageFetcher.getPageContents(url, PRIMING_FETCH_TIMEOUT);
+        } catch (IOException e) {
+            LOG.warn("Skipping priming, fetching {} failed", url, e);
+            return;
+        }
+        // Never expires during priming, so none of the invocations goes upstream again
+        TtlCache<String, String> primingCache = TtlCache.<String, String>builder()
+                .ttl(Duration.ofDays(1))
+                .refreshExecutor(Runnable::run)
+                .build();
+        primingCache.get(url, key -> page);
+        ListProviderHandler priming = new ListProviderHandler(provider, pageFetcher, primingCache, PhaseMetrics.disabled(),
+                new PayloadSampler(0));
+        for (int i = 0; i < PRIMING_INVOCATIONS; i++) {
+            priming.handle(new ByteArrayInputStream(event), OutputStream.nullOutputStream(), PrimingContext.INSTANCE);
+        }
+    }
+
+    ListProvider getProvider() {
+        return provider;
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Neither the cached content nor its timestamps are trustworthy in a restored environment
+        pageCache.invalidateAll();
+        pageFetcher.reset();
+        payloadSampler.reseed();
+    }
+
+    private void handle(InputStream input, OutputStream output, Context context) throws IOException {
+        ThreadContext.put("AWSRequestId", context.getAwsRequestId());
+        ListRequest request = ListRequest.read(input);
+
+        int statusCode = 500;
+        String body = "{}";
+        long start = System.nanoTime();
+        try {
+            Duration timeout = Duration.ofMillis(context.getRemainingTimeInMillis() - RESPONSE_RESERVE_MILLIS);
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IOException("No time left to fetch the upstream resource");
+            }
+            body = provider.body(request, pageCache.get(provider.upstreamUrl(), url -> pageFetcher.getPageContents(url, timeout)));
+            statusCode = 200;
+        } catch (IOException e) {
+            LOG.error("Fetching {} failed: list={}, id={}, accountId={}, userArn={}", provider.upstreamUrl(), provider.name(),
+                    request.getId(), request.getAccountId(), request.getUserArn(), e);
+        } finally {
+            metrics.record("getPageContents", provider.name(), statusCode == 200 ? PhaseMetrics.SUCCESS : PhaseMetrics.FAILURE, start);
+        }
+
+        start = System.nanoTime();
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(output, UTF_8)))) {
+            writer.beginObject();
+            writer.name("statusCode").value(statusCode);
+            writer.name("headers").beginObject()
+                    .name("Content-Type").value("application/json")
+                    .name("X-Custom-Header").value("application/json")
+                    .endObject();
+            writer.name("body").value(statusCode == 200 ? CompressedPayload.compress(body, compressionMinLength) : body);
+            writer.endObject();
+        }
+        metrics.record("serialization", provider.name(), statusCode == 200 ? PhaseMetrics.SUCCESS : PhaseMetrics.FAILURE, start);
+
+        if (statusCode == 200 && payloadSampler.sample()) {
+            LOG.info("Sampled request: list={}, id={}, accountId={}, userArn={}, body={}", provider.name(),
+                    request.getId(), request.getAccountId(), request.getUserArn(), body);
+        } else {
+            LOG.debug("Request: list={}, id={}, accountId={}, userArn={}, status={}", provider.name(),
+                    request.getId(), request.getAccountId(), request.getUserArn(), statusCode);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.ulbrich;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The fields of the state machine input the list providers use.
+ * <p>
+ * The input is either compact, {@code {"id": ..., "accountId": ..., "userArn": ...}} as forwarded by default, or the
+ * complete request of the full {@code /sfn/{id}} request mapping (see {@code info/stepfunction_input.json}), which
+ * carries the same fields as {@code path.id}, {@code requestContext.accountId} and {@code requestContext.userArn}.
+ * Only these fields are read from the stream, everything else is skipped without being materialized.
+ */
+public class ListRequest {
+    private String id;
+    private String accountId;
+    private String userArn;
+
+    public String getId() {
+        return id;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getUserArn() {
+        return userArn;
+    }
+
+    public static ListRequest read(InputStream input) throws IOException {
+        ListRequest request = new ListRequest();
+        JsonReader reader = new JsonReader(new InputStreamReader(input, UTF_8));
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            return request;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("id".equals(name)) {
+                request.id = nextStringOrNull(reader);
+            } else if ("accountId".equals(name)) {
+                request.accountId = nextStringOrNull(reader);
+            } else if ("userArn".equals(name)) {
+                request.userArn = nextStringOrNull(reader);
+            } else if ("path".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("id".equals(reader.nextName())) {
+                        request.id = nextStringOrNull(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if ("requestContext".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if ("accountId".equals(field)) {
+                        request.accountId = nextStringOrNull(reader);
+                    } else if ("userArn".equals(field)) {
+                        request.userArn = nextStringOrNull(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        return request;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.STRING) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
@@ -0,0 +1,159 @@
+package io.ulbrich;
+
+import software.amazon.lambda.powertools.tracing.Tracing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Fetches upstream resources for the list providers.
+ * <p>
+ * One {@link HttpClient} per fetcher keeps connections alive between invocations and negotiates HTTP/2 where the
+ * upstream supports it. Every fetch is bounded by the deadline passed in, which covers connecting, waiting for the
+ * response and reading the body, and by {@code PAGE_MAX_BYTES} (default 1 MiB) for the body size.
+ */
+class PageFetcher {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    private static final int DEFAULT_MAX_BODY_BYTES = 1 << 20;
+
+    private final int maxBodyBytes;
+    private volatile HttpClient client = createClient();
+
+    PageFetcher() {
+        this(intFromEnvironment("PAGE_MAX_BYTES", DEFAULT_MAX_BODY_BYTES));
+    }
+
+    PageFetcher(int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * @return the body without its trailing line break
+     */
+    @Tracing(namespace = "getPageContents")
+    String getPageContents(String address, Duration timeout) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(address))
+                .timeout(timeout)
+                .GET()
+                .build();
+
+        CompletableFuture<HttpResponse<byte[]>> response = client.sendAsync(request,
+                info -> new BoundedBodySubscriber(maxBodyBytes));
+        try {
+            HttpResponse<byte[]> result = response.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            if (result.statusCode() != 200) {
+                throw new IOException("Upstream " + address + " answered " + result.statusCode());
+            }
+            return withoutTrailingLineBreak(new String(result.body(), UTF_8));
+        } catch (TimeoutException e) {
+            throw new IOException("Upstream " + address + " did not answer within " + timeout.toMillis() + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching " + address, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Fetching " + address + " failed", e.getCause());
+        } finally {
+            // Aborts the exchange if the deadline passed
+            response.cancel(true);
+        }
+    }
+
+    /**
+     * Replaces the client, its pooled connections did not survive a SnapStart snapshot.
+     */
+    void reset() {
+        client = createClient();
+    }
+
+    private static String withoutTrailingLineBreak(String body) {
+        int end = body.length();
+        if (end > 0 && body.charAt(end - 1) == '\n') {
+            end--;
+            if (end > 0 && body.charAt(end - 1) == '\r') {
+                end--;
+            }
+        }
+        return body.substring(0, end);
+    }
+
+    private static HttpClient createClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    private static int intFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Collects the body into a buffer that never grows beyond the limit, larger bodies fail the request.
+     */
+    private static class BoundedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final int maxBytes;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        BoundedBodySubscriber(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                if (body.size() + buffer.remaining() > maxBytes) {
+                    subscription.cancel();
+                    result.completeExceptionally(new IOException("Body exceeds " + maxBytes + " bytes"));
+                    return;
+                }
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                body.write(bytes, 0, bytes.length);
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(body.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.ulbrich;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+public class ListProviderHandlerTest {
+    @Rule
+    public final CapturedTelemetry telemetry = new CapturedTelemetry();
+
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+    private volatile int upstreamStatus = 200;
+    private HttpServer upstream;
+    private ListProviderHandler handler;
+
+    @Before
+    public void setUp() throws IOException {
+        upstream = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        upstream.createContext("/", exchange -> {
+            upstreamRequests.incrementAndGet();
+            byte[] response = "203.0.113.7\n".getBytes(UTF_8);
+            exchange.sendResponseHeaders(upstreamStatus, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        upstream.start();
+        String url = "http://" + upstream.getAddress().getHostString() + ":" + upstream.getAddress().getPort() + "/";
+
+        handler = new ListProviderHandler(new ListProvider() {
+            @Override
+            public String name() {
+                return "Test";
+            }
+
+            @Override
+            public String upstreamUrl() {
+                return url;
+            }
+
+            @Override
+            public String body(ListRequest request, String upstream) {
+                return "{\"location\":\"" + upstream.strip() + "\"}";
+            }
+        }, new PageFetcher(), telemetry.metrics(), new PayloadSampler(1));
+    }
+
+    @After
+    public void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    public void primingFetchesTheUpstreamOnce() throws IOException {
+        handler.beforeCheckpoint(null);
+        handler.afterRestore(null);
+
+        assertEquals(1, upstreamRequests.get());
+        telemetry.assertNothingRecorded();
+    }
+
+    @Test
+    public void primingIsSkippedWhenTheUpstreamFails() throws IOException {
+        upstreamStatus = 503;
+
+        handler.beforeCheckpoint(null);
+
+        // One attempt instead of one per priming invocation
+        assertEquals(1, upstreamRequests.get());
+        telemetry.assertLogged("Skipping priming");
+    }
+
+    @Test
+    public void restoredHandlerFetchesAgain() throws IOException {
+        handler.beforeCheckpoint(null);
+        handler.afterRestore(null);
+
+        try (InputStream input = ListProviderHandlerTest.class.getResourceAsStream("/priming/stepfunction_input.json")) {
+            handler.handleRequest(input, OutputStream.nullOutputStream(), PrimingContext.INSTANCE);
+        }
+
+        // The page cache was invalidated with the restore
+        assertEquals(2, upstreamRequests.get());
+        telemetry.assertRecorded(List.of("getPageContents", "serialization"), "Sampled request");
+    }
+}
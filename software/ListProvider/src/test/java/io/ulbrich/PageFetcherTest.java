@@ -0,0 +1,87 @@
+package io.ulbrich;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class PageFetcherTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    // Requests are answered only once released
+    private volatile boolean slow;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile String body = "203.0.113.7\n";
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            if (slow) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] response = body.getBytes(UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            } catch (IOException e) {
+                // The client went away, e.g. because it gave up at the deadline
+            }
+        });
+        // A slow handler blocks its own thread instead of the dispatcher
+        server.setExecutor(serverThreads);
+        server.start();
+        url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void stopServer() {
+        release.countDown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void stripsTrailingLineBreak() throws IOException {
+        assertEquals("203.0.113.7", new PageFetcher(1024).getPageContents(url, TIMEOUT));
+    }
+
+    @Test
+    public void bodiesAboveTheLimitAreRejected() throws IOException {
+        body = "x".repeat(64);
+
+        IOException e = assertThrows(IOException.class, () -> new PageFetcher(63).getPageContents(url, TIMEOUT));
+        assertTrue(e.getMessage(), e.getMessage().contains("Body exceeds 63 bytes"));
+        assertEquals("x".repeat(64), new PageFetcher(64).getPageContents(url, TIMEOUT));
+    }
+
+    @Test
+    public void slowUpstreamFailsAtTheDeadline() {
+        slow = true;
+
+        IOException e = assertThrows(IOException.class, () -> new PageFetcher(1024).getPageContents(url, Duration.ofMillis(200)));
+        assertTrue(e.getMessage(), e.getMessage().contains("did not answer within 200 ms"));
+    }
+}
@@ -0,0 +1,101 @@
+package io.ulbrich.local;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop load generator: {@code concurrency} workers send requests back to back for {@code seconds} and the
+ * end-to-end latency distribution is printed at the end.
+ * <p>
+ * Usage: {@code java -cp local-emulator.jar io.ulbrich.local.LoadGenerator <url> [concurrency] [seconds]}
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadGenerator <url> [concurrency] [seconds]");
+            System.exit(1);
+        }
+        URI uri = URI.create(args[0]);
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        long end = System.nanoTime() + duration.toNanos();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        List<Future<Samples>> results = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            results.add(workers.submit(() -> {
+                Samples samples = new Samples();
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    samples.add(System.nanoTime() - start, status == 200);
+                }
+                return samples;
+            }));
+        }
+
+        Samples total = new Samples();
+        for (Future<Samples> result : results) {
+            total.addAll(result.get());
+        }
+        workers.shutdown();
+        total.print(duration);
+    }
+
+    private static class Samples {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        void add(long latency, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        void print(Duration duration) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            System.out.printf("requests: %d, errors: %d, throughput: %.1f req/s%n", count, errors, count / (double) duration.toSeconds());
+            if (count == 0) {
+                return;
+            }
+            System.out.printf("latency ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                    percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    sorted[count - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.ulbrich.local;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Embedded HTTP server exposing the resources of the {@code MyTestApi} RestApi:
+ * <ul>
+ *   <li>{@code GET /lambda/{id}}: LAMBDA_PROXY integration of ListCoordinator</li>
+ *   <li>{@code POST /lambda/batch}: LAMBDA_PROXY integration of ListCoordinator, the body lists the ids</li>
+ *   <li>{@code POST /lambda/{id}/executions} and {@code GET /lambda/executions/{token}}: LAMBDA_PROXY integration of
+ *   ListCoordinator, asynchronous executions</li>
+ *   <li>{@code GET /sfn/{id}}: direct Step Functions integration, the execution input mirrors the default compact
+ *   request mapping template ({@code {"id": ..., "accountId": ..., "userArn": ...}}) and the response the CDK
+ *   integration response</li>
+ * </ul>
+ * IAM authentication is not emulated, the caller identity is taken from the {@code X-Caller-Account-Id} and
+ * {@code X-Caller-User-Arn} headers.
+ */
+public class LocalApiServer implements AutoCloseable {
+    private static final String DEFAULT_ACCOUNT_ID = "local-account";
+    private static final String DEFAULT_USER_ARN = "arn:aws:iam::local-account:user/local-user";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> listCoordinator;
+    private final LocalStateMachine stateMachine;
+    private final Duration functionTimeout;
+    private final boolean logToStdout;
+
+    public LocalApiServer(int port, RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> listCoordinator,
+                          LocalStateMachine stateMachine, Duration functionTimeout, boolean logToStdout) throws IOException {
+        this.listCoordinator = listCoordinator;
+        this.stateMachine = stateMachine;
+        this.functionTimeout = functionTimeout;
+        this.logToStdout = logToStdout;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/lambda/", this::handleLambda);
+        server.createContext("/sfn/", this::handleSfn);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    private void handleLambda(HttpExchange exchange) throws IOException {
+        String id = pathId(exchange, "/lambda/");
+        String[] segments = exchange.getRequestURI().getPath().substring("/lambda/".length()).split("/", -1);
+        APIGatewayProxyRequestEvent event;
+        if (segments.length == 2 && "executions".equals(segments[1]) && !segments[0].isEmpty()
+                && "POST".equals(exchange.getRequestMethod())) {
+            event = lambdaEvent(exchange, "/lambda/{id}/executions").withPathParameters(Map.of("id", segments[0]));
+        } else if (segments.length == 2 && "executions".equals(segments[0]) && !segments[1].isEmpty()
+                && "GET".equals(exchange.getRequestMethod())) {
+            event = lambdaEvent(exchange, "/lambda/executions/{token}").withPathParameters(Map.of("token", segments[1]));
+        } else if ("batch".equals(id) && "POST".equals(exchange.getRequestMethod())) {
+            String body;
+            try (InputStream input = exchange.getRequestBody()) {
+                body = new String(input.readAllBytes(), UTF_8);
+            }
+            event = lambdaEvent(exchange, "/lambda/batch").withBody(body);
+        } else if (id != null && !"batch".equals(id) && "GET".equals(exchange.getRequestMethod())) {
+            event = lambdaEvent(exchange, "/lambda/{id}").withPathParameters(Map.of("id", id));
+        } else {
+            send(exchange, 404, Map.of(), "{\"message\":\"Missing Authentication Token\"}");
+            return;
+        }
+
+        APIGatewayProxyResponseEvent response;
+        try {
+            response = listCoordinator.handleRequest(event, new LocalContext("ListCoordinatorFunction", functionTimeout, logToStdout));
+        } catch (RuntimeException e) {
+            send(exchange, 502, Map.of(), "{\"message\":\"Internal server error\"}");
+            return;
+        }
+        send(exchange, response.getStatusCode(), response.getHeaders() != null ? response.getHeaders() : Map.of(), response.getBody());
+    }
+
+    private APIGatewayProxyRequestEvent lambdaEvent(HttpExchange exchange, String resource) {
+        return new APIGatewayProxyRequestEvent()
+                .withResource(resource)
+                .withPath(exchange.getRequestURI().getPath())
+                .withHttpMethod(exchange.getRequestMethod())
+                .withHeaders(headers(exchange))
+                .withRequestContext(new APIGatewayProxyRequestEvent.ProxyRequestContext()
+                        .withResourcePath(resource)
+                        .withHttpMethod(exchange.getRequestMethod())
+                        .withStage("local")
+                        .withIdentity(new APIGatewayProxyRequestEvent.RequestIdentity()
+                                .withAccountId(accountId(exchange))
+                                .withUserArn(userArn(exchange))));
+    }
+
+    private void handleSfn(HttpExchange exchange) throws IOException {
+        String id = pathId(exchange, "/sfn/");
+        if (id == null || !"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 404, Map.of(), "{\"message\":\"Missing Authentication Token\"}");
+            return;
+        }
+        JsonObject input = new JsonObject();
+        input.addProperty("id", id);
+        input.addProperty("accountId", accountId(exchange));
+        input.addProperty("userArn", userArn(exchange));
+
+        LocalStateMachine.Execution execution = stateMachine.execute(input.toString());
+        if (execution.isSucceeded()) {
+            send(exchange, 200, Map.of("Content-Type", "application/json"), execution.getOutput());
+        } else {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", execution.getError());
+            error.addProperty("cause", execution.getCause());
+            send(exchange, 500, Map.of("Content-Type", "application/json"), error.toString());
+        }
+    }
+
+    private static String pathId(HttpExchange exchange, String prefix) {
+        String id = exchange.getRequestURI().getPath().substring(prefix.length());
+        return id.isEmpty() || id.contains("/") ? null : id;
+    }
+
+    private static Map<String, String> headers(HttpExchange exchange) {
+        Map<String, String> headers = new HashMap<>();
+        exchange.getRequestHeaders().forEach((name, values) -> headers.put(name, String.join(",", values)));
+        return headers;
+    }
+
+    private static String accountId(HttpExchange exchange) {
+        String accountId = exchange.getRequestHeaders().getFirst("X-Caller-Account-Id");
+        return accountId != null ? accountId : DEFAULT_ACCOUNT_ID;
+    }
+
+    private static String userArn(HttpExchange exchange) {
+        String userArn = exchange.getRequestHeaders().getFirst("X-Caller-User-Arn");
+        return userArn != null ? userArn : DEFAULT_USER_ARN;
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, Map<String, String> headers, String body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(UTF_8);
+        headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        exchange.sendResponseHeaders(statusCode, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+}
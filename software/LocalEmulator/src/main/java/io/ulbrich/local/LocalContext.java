@@ -0,0 +1,127 @@
+package io.ulbrich.local;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Lambda {@link Context} of a single local invocation.
+ * <p>
+ * The remaining time counts down from the function timeout starting at creation, like it does in Lambda, unless the
+ * context is created with {@link #fixed(String)} for benchmarks that reuse one context.
+ * Log output is either written to stdout or discarded, so console I/O does not dominate measurements.
+ */
+public class LocalContext implements Context {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final LambdaLogger DISCARDING_LOGGER = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void log(byte[] message) {
+        }
+    };
+
+    private static final LambdaLogger STDOUT_LOGGER = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+            System.out.println(message);
+        }
+
+        @Override
+        public void log(byte[] message) {
+            System.out.println(new String(message, UTF_8));
+        }
+    };
+
+    private final String functionName;
+    private final String requestId;
+    private final long timeoutNanos;
+    private final long startedAt;
+    private final boolean countDown;
+    private final LambdaLogger logger;
+
+    public LocalContext(String functionName, Duration timeout, boolean logToStdout) {
+        this(functionName, timeout, true, logToStdout);
+    }
+
+    private LocalContext(String functionName, Duration timeout, boolean countDown, boolean logToStdout) {
+        this.functionName = functionName;
+        this.requestId = UUID.randomUUID().toString();
+        this.timeoutNanos = timeout.toNanos();
+        this.startedAt = System.nanoTime();
+        this.countDown = countDown;
+        this.logger = logToStdout ? STDOUT_LOGGER : DISCARDING_LOGGER;
+    }
+
+    /**
+     * @return a context that always reports the full default timeout as remaining time and discards log output
+     */
+    public static LocalContext fixed(String functionName) {
+        return new LocalContext(functionName, DEFAULT_TIMEOUT, false, false);
+    }
+
+    @Override
+    public String getAwsRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return "/aws/lambda/" + functionName;
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return "local";
+    }
+
+    @Override
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return "$LATEST";
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return "arn:aws:lambda:eu-central-1:123456789012:function:" + functionName;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+        long remaining = countDown ? timeoutNanos - (System.nanoTime() - startedAt) : timeoutNanos;
+        return (int) Math.max(0, remaining / 1_000_000);
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        return 1024;
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return logger;
+    }
+}
@@ -0,0 +1,92 @@
+package io.ulbrich.local;
+
+import io.ulbrich.App;
+import io.ulbrich.AsyncCoordinator;
+import io.ulbrich.BarListHandler;
+import io.ulbrich.BarListProvider;
+import io.ulbrich.FooListHandler;
+import io.ulbrich.FooListProvider;
+import io.ulbrich.InMemoryResultStore;
+import io.ulbrich.ListProvider;
+import io.ulbrich.ListProviderHandler;
+import io.ulbrich.PhaseMetrics;
+import io.ulbrich.StepFunctionsCoordinator;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs the whole {@code MyTestApi} flow in one JVM: API, ListCoordinator, the express state machine and the list
+ * providers. Load it with {@link LoadGenerator} or any HTTP load testing tool.
+ * <p>
+ * Usage: {@code java -jar local-emulator.jar [--port <port>] [--real-upstream] [--log]}
+ * <ul>
+ *   <li>{@code --port}: port of the API, defaults to 8080</li>
+ *   <li>{@code --real-upstream}: fetch the location from checkip.amazonaws.com instead of a local stub</li>
+ *   <li>{@code --log}: log every request, sets {@code LOG_LEVEL} to DEBUG unless it is set in the environment</li>
+ * </ul>
+ * The phase metrics are written to stdout as EMF lines, {@code PHASE_METRICS_ENABLED=false} turns them off.
+ */
+public class LocalEmulator {
+    private static final String STATE_MACHINE_ARN = "arn:aws:states:eu-central-1:123456789012:stateMachine:MyStateMachine";
+    private static final String BATCH_STATE_MACHINE_ARN = "arn:aws:states:eu-central-1:123456789012:stateMachine:MyBatchStateMachine";
+    private static final String ASYNC_STATE_MACHINE_ARN = "arn:aws:states:eu-central-1:123456789012:stateMachine:MyAsyncStateMachine";
+    private static final int BATCH_CONCURRENCY = 10;
+    private static final Duration RESULT_TTL = Duration.ofMinutes(15);
+
+    public static void main(String[] args) throws IOException {
+        // Otherwise Nagle's algorithm adds ~40ms to small responses and hides the actual overhead
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        int port = 8080;
+        boolean realUpstream = false;
+        boolean logToStdout = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--real-upstream":
+                    realUpstream = true;
+                    break;
+                case "--log":
+                    logToStdout = true;
+                    // Read by log4j2.xml if the environment variable is absent, the handlers are not loaded yet
+                    System.setProperty("LOG_LEVEL", "DEBUG");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        ListProviderHandler fooList;
+        ListProviderHandler barList;
+        if (realUpstream) {
+            fooList = new FooListHandler();
+            barList = new BarListHandler();
+        } else {
+            StubHttpServer upstream = new StubHttpServer("127.0.0.1");
+            fooList = new ListProviderHandler(redirected(new FooListProvider(), upstream));
+            barList = new ListProviderHandler(redirected(new BarListProvider(), upstream));
+        }
+
+        Duration functionTimeout = LocalContext.DEFAULT_TIMEOUT;
+        LocalStateMachine stateMachine = new LocalStateMachine(List.of(
+                new LocalStateMachine.Branch("FetchFoo", fooList),
+                new LocalStateMachine.Branch("FetchBar", barList),
+                new LocalStateMachine.Branch("FetchFoo2", fooList)), functionTimeout, logToStdout);
+        InMemoryResultStore resultStore = new InMemoryResultStore();
+        LocalSfnClient sfnClient = new LocalSfnClient(stateMachine, BATCH_STATE_MACHINE_ARN, BATCH_CONCURRENCY, resultStore);
+        App listCoordinator = new App(new StepFunctionsCoordinator(sfnClient, STATE_MACHINE_ARN),
+                new StepFunctionsCoordinator(sfnClient, BATCH_STATE_MACHINE_ARN),
+                new AsyncCoordinator(() -> sfnClient, ASYNC_STATE_MACHINE_ARN, resultStore, RESULT_TTL, PhaseMetrics.instance()));
+
+        LocalApiServer api = new LocalApiServer(port, listCoordinator, stateMachine, functionTimeout, logToStdout);
+        System.out.println("API listening on " + api.url() + " (GET /lambda/{id}, POST /lambda/batch, "
+                + "POST /lambda/{id}/executions, GET /lambda/executions/{token}, GET /sfn/{id})");
+    }
+
+    private static ListProvider redirected(ListProvider provider, StubHttpServer upstream) {
+        return new RedirectedListProvider(provider, upstream.url());
+    }
+}
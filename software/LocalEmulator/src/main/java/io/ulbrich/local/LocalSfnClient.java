@@ -0,0 +1,106 @@
+package io.ulbrich.local;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.ulbrich.InMemoryResultStore;
+import io.ulbrich.ResultStore;
+import software.amazon.awssdk.services.sfn.SfnClient;
+import software.amazon.awssdk.services.sfn.model.StartExecutionRequest;
+import software.amazon.awssdk.services.sfn.model.StartExecutionResponse;
+import software.amazon.awssdk.services.sfn.model.StartSyncExecutionRequest;
+import software.amazon.awssdk.services.sfn.model.StartSyncExecutionResponse;
+import software.amazon.awssdk.services.sfn.model.SyncExecutionStatus;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link SfnClient} that runs synchronous executions on a {@link LocalStateMachine}. Executions of the batch state
+ * machine run its Map state, all other ARNs run the Parallel state.
+ * Lets ListCoordinator run locally unchanged through its {@code StepFunctionsCoordinator}.
+ * <p>
+ * Asynchronous executions emulate the async state machine: they run the Parallel state in the background and write
+ * the result to the {@link ResultStore}, like its {@code Store Result} and {@code Store Failure} tasks.
+ */
+public class LocalSfnClient implements SfnClient {
+    private final LocalStateMachine stateMachine;
+    private final String batchStateMachineArn;
+    private final int batchConcurrency;
+    private final ResultStore resultStore;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "local-execution");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Keeps the results of asynchronous executions in an {@link InMemoryResultStore}.
+     */
+    public LocalSfnClient(LocalStateMachine stateMachine) {
+        this(stateMachine, null, 1, new InMemoryResultStore());
+    }
+
+    /**
+     * @param resultStore receives the results of asynchronous executions, read by the {@code AsyncCoordinator}
+     */
+    public LocalSfnClient(LocalStateMachine stateMachine, String batchStateMachineArn, int batchConcurrency, ResultStore resultStore) {
+        this.stateMachine = stateMachine;
+        this.batchStateMachineArn = batchStateMachineArn;
+        this.batchConcurrency = batchConcurrency;
+        this.resultStore = Objects.requireNonNull(resultStore, "resultStore is required to emulate asynchronous executions");
+    }
+
+    @Override
+    public StartExecutionResponse startExecution(StartExecutionRequest request) {
+        Instant startDate = Instant.now();
+        JsonObject input = JsonParser.parseString(request.input()).getAsJsonObject();
+        String token = input.get("token").getAsString();
+        String accountId = input.get("accountId").getAsString();
+        long expiresAt = Long.parseLong(input.get("expiresAt").getAsString());
+        executor.execute(() -> {
+            LocalStateMachine.Execution execution = stateMachine.execute(request.input());
+            if (execution.isSucceeded()) {
+                resultStore.put(token, new ResultStore.Entry(ResultStore.Status.SUCCEEDED, accountId, execution.getOutput(), expiresAt));
+            } else {
+                JsonObject error = new JsonObject();
+                error.addProperty("Error", execution.getError());
+                error.addProperty("Cause", execution.getCause());
+                resultStore.put(token, new ResultStore.Entry(ResultStore.Status.FAILED, accountId, error.toString(), expiresAt));
+            }
+        });
+        return StartExecutionResponse.builder()
+                .executionArn(request.stateMachineArn() + ":" + request.name())
+                .startDate(startDate)
+                .build();
+    }
+
+    @Override
+    public StartSyncExecutionResponse startSyncExecution(StartSyncExecutionRequest request) {
+        Instant startDate = Instant.now();
+        LocalStateMachine.Execution execution = request.stateMachineArn().equals(batchStateMachineArn)
+                ? stateMachine.executeEach(request.input(), batchConcurrency)
+                : stateMachine.execute(request.input());
+        return StartSyncExecutionResponse.builder()
+                .executionArn(request.stateMachineArn() + ":" + request.name())
+                .name(request.name())
+                .input(request.input())
+                .startDate(startDate)
+                .stopDate(Instant.now())
+                .status(execution.isSucceeded() ? SyncExecutionStatus.SUCCEEDED : SyncExecutionStatus.FAILED)
+                .output(execution.getOutput())
+                .error(execution.getError())
+                .cause(execution.getCause())
+                .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,183 @@
+package io.ulbrich.local;
+
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Emulates the express state machines of {@code MyTestApi}: the {@code Fetch All} Parallel state runs one
+ * {@code LambdaInvoke} task per branch concurrently and outputs the task results as array, in branch order. Branches
+ * sharing a handler invoke it once, like the deduplicated branches of the deployed state machine.
+ * The {@code Fetch Each} Map state of the batch state machine runs {@code Fetch All} for every id, see
+ * {@link #executeEach(String, int)}.
+ * <p>
+ * Branch handlers are shared between concurrent executions, unlike in Lambda where every invocation gets its own
+ * execution environment. Every invocation gets a fresh {@link LocalContext} with the function timeout.
+ */
+public class LocalStateMachine {
+    private final List<Branch> branches;
+    private final Duration functionTimeout;
+    private final boolean logToStdout;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "local-branch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LocalStateMachine(List<Branch> branches, Duration functionTimeout, boolean logToStdout) {
+        this.branches = List.copyOf(branches);
+        this.functionTimeout = functionTimeout;
+        this.logToStdout = logToStdout;
+    }
+
+    public Execution execute(String input) {
+        byte[] payload = input.getBytes(UTF_8);
+        Map<RequestStreamHandler, CompletableFuture<String>> invocations = new IdentityHashMap<>();
+        List<CompletableFuture<String>> results = new ArrayList<>(branches.size());
+        for (Branch branch : branches) {
+            results.add(invocations.computeIfAbsent(branch.handler,
+                    handler -> CompletableFuture.supplyAsync(() -> invoke(branch, payload), executor)));
+        }
+
+        StringBuilder output = new StringBuilder(256).append('[');
+        for (int i = 0; i < results.size(); i++) {
+            String result;
+            try {
+                result = results.get(i).get(functionTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return Execution.failed("States.Timeout", "Branch " + branches.get(i).name + " timed out");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Execution.failed("States.Runtime", "Interrupted");
+            } catch (ExecutionException e) {
+                return Execution.failed("Lambda.Unknown", "Branch " + branches.get(i).name + " failed: " + e.getCause());
+            }
+            if (i > 0) {
+                output.append(',');
+            }
+            output.append("{\"ExecutedVersion\":\"$LATEST\",\"Payload\":").append(result).append(",\"StatusCode\":200}");
+        }
+        return Execution.succeeded(output.append(']').toString());
+    }
+
+    /**
+     * Runs {@code Fetch All} for every id of a batch input like {@code {"ids": [...], "accountId": ..., "userArn": ...}},
+     * at most {@code maxConcurrency} at a time, and outputs the results as array, in id order.
+     */
+    public Execution executeEach(String input, int maxConcurrency) {
+        JsonObject batch = JsonParser.parseString(input).getAsJsonObject();
+        JsonArray ids = batch.getAsJsonArray("ids");
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<CompletableFuture<Execution>> items = new ArrayList<>(ids.size());
+        for (JsonElement id : ids) {
+            // Like the parameters of the Map state
+            JsonObject item = new JsonObject();
+            item.add("id", id);
+            item.add("accountId", batch.get("accountId"));
+            item.add("userArn", batch.get("userArn"));
+            items.add(CompletableFuture.supplyAsync(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    return execute(item.toString());
+                } finally {
+                    permits.release();
+                }
+            }, executor));
+        }
+
+        StringBuilder output = new StringBuilder(256 * ids.size()).append('[');
+        for (int i = 0; i < items.size(); i++) {
+            Execution execution = items.get(i).join();
+            if (!execution.isSucceeded()) {
+                return execution;
+            }
+            if (i > 0) {
+                output.append(',');
+            }
+            output.append(execution.getOutput());
+        }
+        return Execution.succeeded(output.append(']').toString());
+    }
+
+    private String invoke(Branch branch, byte[] payload) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        try {
+            branch.handler.handleRequest(new ByteArrayInputStream(payload), output, new LocalContext(branch.name, functionTimeout, logToStdout));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toString(UTF_8);
+    }
+
+    /**
+     * A branch of the Parallel state, i.e. the function invoked by its {@code LambdaInvoke} task.
+     */
+    public static class Branch {
+        private final String name;
+        private final RequestStreamHandler handler;
+
+        public Branch(String name, RequestStreamHandler handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+    }
+
+    public static class Execution {
+        private final boolean succeeded;
+        private final String output;
+        private final String error;
+        private final String cause;
+
+        private Execution(boolean succeeded, String output, String error, String cause) {
+            this.succeeded = succeeded;
+            this.output = output;
+            this.error = error;
+            this.cause = cause;
+        }
+
+        static Execution succeeded(String output) {
+            return new Execution(true, output, null, null);
+        }
+
+        static Execution failed(String error, String cause) {
+            return new Execution(false, null, error, cause);
+        }
+
+        public boolean isSucceeded() {
+            return succeeded;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public String getCause() {
+            return cause;
+        }
+    }
+}
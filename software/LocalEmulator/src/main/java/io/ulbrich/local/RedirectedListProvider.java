@@ -0,0 +1,33 @@
+package io.ulbrich.local;
+
+import io.ulbrich.ListProvider;
+import io.ulbrich.ListRequest;
+
+/**
+ * Serves the list of another {@link ListProvider} but fetches the upstream resource from a different URL,
+ * e.g. a {@link StubHttpServer}.
+ */
+public class RedirectedListProvider implements ListProvider {
+    private final ListProvider provider;
+    private final String upstreamUrl;
+
+    public RedirectedListProvider(ListProvider provider, String upstreamUrl) {
+        this.provider = provider;
+        this.upstreamUrl = upstreamUrl;
+    }
+
+    @Override
+    public String name() {
+        return provider.name();
+    }
+
+    @Override
+    public String upstreamUrl() {
+        return upstreamUrl;
+    }
+
+    @Override
+    public String body(ListRequest request, String upstream) {
+        return provider.body(request, upstream);
+    }
+}
@@ -0,0 +1,38 @@
+package io.ulbrich.local;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Local HTTP server answering every request with a fixed body, stands in for {@code checkip.amazonaws.com}.
+ */
+public class StubHttpServer implements AutoCloseable {
+    private final HttpServer server;
+
+    public StubHttpServer(String body) throws IOException {
+        byte[] response = body.getBytes(UTF_8);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.start();
+    }
+
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}